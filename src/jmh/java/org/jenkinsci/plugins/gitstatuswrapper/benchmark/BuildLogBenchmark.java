@@ -0,0 +1,87 @@
+/*
+MIT License
+
+Copyright (c) 2019 Zachary Sherwin
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitstatuswrapper.benchmark;
+
+import hudson.model.Run;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.jenkinsci.plugins.gitstatuswrapper.jenkins.JenkinsHelpers;
+import org.jenkinsci.plugins.gitstatuswrapper.jenkins.PlainLogReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Reading a build log without console notes: the whole-log String of
+ * {@link JenkinsHelpers#getBuildLogOutput} against the line reader used by the log matchers.
+ * Run with -prof gc and divide gc.alloc.rate.norm by the log size to get bytes allocated per MB.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BuildLogBenchmark {
+
+  @Param({"64", "1024", "16384"})
+  public int logSizeKb;
+
+  private byte[] log;
+  private Run<?, ?> run;
+
+  @Setup
+  public void setup() throws IOException {
+    log = BuildLogs.generate(logSizeKb);
+    run = BuildLogs.run(log);
+  }
+
+  @Benchmark
+  @SuppressWarnings("deprecation")
+  public String wholeLog() throws IOException {
+    return JenkinsHelpers.getBuildLogOutput(run);
+  }
+
+  @Benchmark
+  public void plainLines(Blackhole blackhole) throws IOException {
+    try (PlainLogReader reader = new PlainLogReader(new ByteArrayInputStream(log),
+        StandardCharsets.UTF_8)) {
+      CharSequence line;
+      while ((line = reader.readLine()) != null) {
+        blackhole.consume(line);
+      }
+    }
+  }
+}
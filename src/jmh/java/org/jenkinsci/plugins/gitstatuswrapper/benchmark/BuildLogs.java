@@ -0,0 +1,86 @@
+/*
+MIT License
+
+Copyright (c) 2019 Zachary Sherwin
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitstatuswrapper.benchmark;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import hudson.console.ConsoleNote;
+import hudson.model.Run;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Synthetic build logs shared by the benchmarks
+ */
+final class BuildLogs {
+
+  static final String LAST_LINE = "buildVersion=1.2.3";
+
+  private BuildLogs() {
+  }
+
+  /**
+   * A maven-like log of roughly the given size, with a console note every 16 lines and
+   * {@link #LAST_LINE} at the end
+   */
+  static byte[] generate(int sizeKb) {
+    StringBuilder log = new StringBuilder(sizeKb * 1024 + 128);
+    String note = ConsoleNote.PREAMBLE_STR + "ha:AAAAWB+LCAAAAAAAAP9b85aBtbiIQTGjNKU4P08vOT+vOD8"
+        + "nVc83PyU1x6OyILUoJzMv2y+/JJUBAhiZGBgqihhk0NSjKDWzXb3RdlLBUSYGJk8GtpzUvPSSDB8G5tKinBIGIZ"
+        + "+sxLJE/ZzEvHT94JKizLx0a6BxUmjGOUNodHsLgAEGBmYGBn0A3ygH4l0AAAA=" + ConsoleNote.POSTAMBLE_STR;
+    int line = 0;
+    while (log.length() < sizeKb * 1024) {
+      if (line % 16 == 0) {
+        log.append(note);
+      }
+      log.append("[INFO] Compiling module-").append(line)
+          .append(" src/main/java/org/example/Component").append(line).append(".java\n");
+      line++;
+    }
+    log.append(LAST_LINE).append('\n');
+    return log.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * A run whose log is the given bytes, also written to a temporary log file for tail scans
+   */
+  @SuppressWarnings("unchecked")
+  static Run<?, ?> run(byte[] log) throws IOException {
+    File logFile = File.createTempFile("log", null);
+    logFile.deleteOnExit();
+    Files.write(logFile.toPath(), log);
+    Run<?, ?> run = mock(Run.class);
+    when(run.getLogFile()).thenReturn(logFile);
+    when(run.getLogInputStream()).thenAnswer(invocation -> new ByteArrayInputStream(log));
+    when(run.getLogReader()).thenAnswer(
+        invocation -> new InputStreamReader(new ByteArrayInputStream(log), StandardCharsets.UTF_8));
+    when(run.getCharset()).thenReturn(StandardCharsets.UTF_8);
+    return run;
+  }
+}
@@ -0,0 +1,105 @@
+/*
+MIT License
+
+Copyright (c) 2019 Zachary Sherwin
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitstatuswrapper.benchmark;
+
+import hudson.model.Run;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.jenkinsci.plugins.gitstatuswrapper.jenkins.DescriptionPatterns;
+import org.jenkinsci.plugins.gitstatuswrapper.jenkins.JenkinsHelpers;
+import org.jenkinsci.plugins.gitstatuswrapper.jenkins.LogPatternMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Resolution of a regex success description such as /^buildVersion=(.*)$/, as done by the step
+ * and the builder when the build ends. The match is on the last line of the log, the worst case
+ * for a forward scan.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DescriptionBenchmark {
+
+  private static final String DESCRIPTION = "/^buildVersion=(.*)$/";
+
+  @Param({"64", "1024", "16384"})
+  public int logSizeKb;
+
+  private Run<?, ?> run;
+
+  @Setup
+  public void setup() throws IOException {
+    run = BuildLogs.run(BuildLogs.generate(logSizeKb));
+  }
+
+  /**
+   * How descriptions were resolved before: compile on every call and match the whole log
+   */
+  @Benchmark
+  @SuppressWarnings("deprecation")
+  public String wholeLog() throws IOException {
+    String regex = DESCRIPTION.substring(1, DESCRIPTION.length() - 1);
+    Matcher matcher = Pattern.compile(regex, Pattern.MULTILINE)
+        .matcher(JenkinsHelpers.getBuildLogOutput(run));
+    if (matcher.find()) {
+      return matcher.groupCount() > 0 ? matcher.group(1) : matcher.group();
+    }
+    return null;
+  }
+
+  @Benchmark
+  public String streamed() throws IOException {
+    return LogPatternMatcher
+        .find(run, DescriptionPatterns.compile(DescriptionPatterns.regexOf(DESCRIPTION)));
+  }
+
+  @Benchmark
+  public String streamedLastMatch() throws IOException {
+    return LogPatternMatcher
+        .find(run, DescriptionPatterns.compile(DescriptionPatterns.regexOf(DESCRIPTION)), 0,
+            true);
+  }
+
+  @Benchmark
+  public String streamedTail() throws IOException {
+    return LogPatternMatcher
+        .find(run, DescriptionPatterns.compile(DescriptionPatterns.regexOf(DESCRIPTION)),
+            64 * 1024, true);
+  }
+}
@@ -0,0 +1,119 @@
+/*
+MIT License
+
+Copyright (c) 2019 Zachary Sherwin
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitstatuswrapper.benchmark;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import hudson.model.Action;
+import hudson.model.Run;
+import hudson.plugins.git.util.BuildData;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import jenkins.plugins.git.AbstractGitSCMSource;
+import jenkins.scm.api.SCMHead;
+import jenkins.scm.api.SCMRevisionAction;
+import org.jenkinsci.plugins.gitstatuswrapper.github.GitHubHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Inference of account, repo and sha from the git data of a run, done by the first step of a run
+ * that does not configure them explicitly. The later steps get the values from the
+ * {@code BuildInference} of the run, which infers them again once an action is added to the run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InferenceBenchmark {
+
+  @Param({"https://github.com/acme/widgets.git", "https://ghe.example.com/acme/widgets.git",
+      "git@github.com:acme/widgets.git"})
+  public String remoteUrl;
+
+  private Run<?, ?> run;
+  /**
+   * The same run with a constant number of actions, its inferred values stay cached
+   */
+  private Run<?, ?> cachedRun;
+  private boolean actionAdded;
+
+  @Setup
+  public void setup() {
+    BuildData buildData = new BuildData();
+    buildData.addRemoteUrl(remoteUrl);
+    SCMRevisionAction revisionAction = mock(SCMRevisionAction.class);
+    when(revisionAction.getRevision()).thenReturn(new AbstractGitSCMSource.SCMRevisionImpl(
+        new SCMHead("master"), "439ac0b0c4870bf5936e84940d73128db905e93d"));
+    cachedRun = mockRun(buildData, revisionAction);
+    run = mockRun(buildData, revisionAction);
+    // Every call sees a new number of actions, so every call infers the values again
+    List<Action> oneAction = Collections.singletonList(mock(Action.class));
+    when(run.getActions()).thenAnswer(invocation -> {
+      actionAdded = !actionAdded;
+      return actionAdded ? oneAction : Collections.emptyList();
+    });
+  }
+
+  private static Run<?, ?> mockRun(BuildData buildData, SCMRevisionAction revisionAction) {
+    Run<?, ?> run = mock(Run.class);
+    when(run.getActions(BuildData.class)).thenReturn(Collections.singletonList(buildData));
+    when(run.getAction(SCMRevisionAction.class)).thenReturn(revisionAction);
+    return run;
+  }
+
+  @Benchmark
+  public String inferBuildAccount() throws IOException {
+    return GitHubHelper.inferBuildAccount(run);
+  }
+
+  @Benchmark
+  public String inferBuildRepo() throws IOException {
+    return GitHubHelper.inferBuildRepo(run);
+  }
+
+  @Benchmark
+  public String inferBuildCommitSHA1() throws IOException {
+    return GitHubHelper.inferBuildCommitSHA1(run);
+  }
+
+  @Benchmark
+  public String cachedInferBuildRepo() throws IOException {
+    return GitHubHelper.inferBuildRepo(cachedRun);
+  }
+}
@@ -0,0 +1,168 @@
+/*
+MIT License
+
+Copyright (c) 2019 Zachary Sherwin
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitstatuswrapper.benchmark;
+
+import com.cloudbees.plugins.credentials.CredentialsScope;
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jenkinsci.plugins.gitstatuswrapper.DummyCredentials;
+import org.jenkinsci.plugins.gitstatuswrapper.github.FakeGitHubServer;
+import org.jenkinsci.plugins.gitstatuswrapper.github.StatusPublisher;
+import org.jenkinsci.plugins.gitstatuswrapper.github.StatusTarget;
+import org.jenkinsci.plugins.gitstatuswrapper.github.StatusUpdate;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.kohsuke.github.GHCommitState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Posting a commit status through {@link StatusPublisher} against an in-process fake GitHub, the
+ * network is loopback so the numbers are the controller side cost of a status: outbox record,
+ * publisher lane, credentials and repository lookup, sha resolution and the post.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class StatusPostBenchmark {
+
+  private static final String FULL_SHA = "439ac0b0c4870bf5936e84940d73128db905e93d";
+
+  /**
+   * Whether the sha is verified through the commit api before posting
+   */
+  @Param({"false", "true"})
+  public boolean verifyCommit;
+
+  private final JenkinsRule jenkins = new JenkinsRule();
+  private final CountDownLatch started = new CountDownLatch(1);
+  private final CountDownLatch stopped = new CountDownLatch(1);
+  private final AtomicInteger contexts = new AtomicInteger();
+  private volatile Throwable failure;
+  private Thread session;
+  private FakeGitHubServer server;
+
+  @Setup(Level.Trial)
+  public void setup() throws Throwable {
+    // The credentials, proxy and outbox of a status come from a running Jenkins
+    jenkins.timeout = 0;
+    Statement running = jenkins.apply(new Statement() {
+      @Override
+      public void evaluate() throws Throwable {
+        started.countDown();
+        stopped.await();
+      }
+    }, Description.createTestDescription(StatusPostBenchmark.class, "statuses"));
+    session = new Thread(() -> {
+      try {
+        running.evaluate();
+      } catch (Throwable t) {
+        failure = t;
+        started.countDown();
+      }
+    }, "Jenkins session");
+    session.start();
+    started.await();
+    if (failure != null) {
+      throw failure;
+    }
+    SystemCredentialsProvider.getInstance().getCredentials()
+        .add(new DummyCredentials(CredentialsScope.GLOBAL, "user", "password"));
+    server = FakeGitHubServer.start();
+  }
+
+  @Setup(Level.Iteration)
+  public void reset() {
+    server.reset();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws InterruptedException {
+    server.close();
+    stopped.countDown();
+    session.join();
+  }
+
+  /**
+   * A target per benchmark thread, so the threads do not supersede each other's statuses
+   */
+  @State(Scope.Thread)
+  public static class Context {
+
+    private StatusTarget target;
+    private String gitHubContext;
+
+    @Setup(Level.Trial)
+    public void setup(StatusPostBenchmark benchmark) {
+      gitHubContext = "ci/jenkins-" + benchmark.contexts.incrementAndGet();
+      target = benchmark.target(gitHubContext);
+    }
+  }
+
+  /**
+   * The repository handle and the sha are resolved once per target, as for the statuses of a
+   * single wrapper
+   */
+  @Benchmark
+  public void postStatus(Context context) throws IOException, InterruptedException {
+    StatusPublisher.await(StatusPublisher.publish(new StatusUpdate(context.target,
+        GHCommitState.PENDING, "https://jenkins.example.com/job/widgets/1/",
+        "Build in progress")));
+  }
+
+  /**
+   * A new target resolves the repository and the sha again, as the first status of a wrapper
+   */
+  @Benchmark
+  public void lookupAndPostStatus(Context context) throws IOException, InterruptedException {
+    StatusPublisher.await(StatusPublisher.publish(new StatusUpdate(
+        target(context.gitHubContext), GHCommitState.SUCCESS,
+        "https://jenkins.example.com/job/widgets/1/", "Build passed")));
+  }
+
+  private StatusTarget target(String gitHubContext) {
+    return new StatusTarget("dummy", server.getApiUrl(), "acme", "widgets", FULL_SHA,
+        gitHubContext, verifyCommit, null);
+  }
+}
@@ -40,16 +40,18 @@ import hudson.util.VariableResolver;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.CompletableFuture;
 import org.apache.commons.lang.StringUtils;
 import org.jenkinsci.plugins.displayurlapi.DisplayURLProvider;
 import org.jenkinsci.plugins.gitstatuswrapper.Messages;
 import org.jenkinsci.plugins.gitstatuswrapper.github.GitHubHelper;
+import org.jenkinsci.plugins.gitstatuswrapper.github.StatusPublisher;
+import org.jenkinsci.plugins.gitstatuswrapper.github.StatusTarget;
+import org.jenkinsci.plugins.gitstatuswrapper.github.StatusUpdate;
+import org.jenkinsci.plugins.gitstatuswrapper.jenkins.DescriptionPatterns;
 import org.jenkinsci.plugins.gitstatuswrapper.jenkins.JenkinsHelpers;
-import org.kohsuke.github.GHCommit;
+import org.jenkinsci.plugins.gitstatuswrapper.jenkins.LogPatternMatcher;
 import org.kohsuke.github.GHCommitState;
-import org.kohsuke.github.GHRepository;
 import org.kohsuke.stapler.AncestorInPath;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.DataBoundSetter;
@@ -170,6 +172,42 @@ public class GitStatusWrapperBuilder extends Builder {
     this.failureDescription = failureDescription;
   }
 
+  public boolean isVerifyCommit() {
+    return verifyCommit;
+  }
+
+  @DataBoundSetter
+  public void setVerifyCommit(boolean verifyCommit) {
+    this.verifyCommit = verifyCommit;
+  }
+
+  public boolean isBestEffort() {
+    return bestEffort;
+  }
+
+  @DataBoundSetter
+  public void setBestEffort(boolean bestEffort) {
+    this.bestEffort = bestEffort;
+  }
+
+  public int getLogScanTailKb() {
+    return logScanTailKb;
+  }
+
+  @DataBoundSetter
+  public void setLogScanTailKb(int logScanTailKb) {
+    this.logScanTailKb = Math.max(0, logScanTailKb);
+  }
+
+  public boolean isLogScanReverse() {
+    return logScanReverse;
+  }
+
+  @DataBoundSetter
+  public void setLogScanReverse(boolean logScanReverse) {
+    this.logScanReverse = logScanReverse;
+  }
+
   /**
    * A string label to differentiate the send status from the status of other systems.
    */
@@ -229,6 +267,23 @@ public class GitStatusWrapperBuilder extends Builder {
    * Defaults to description if empty
    */
   private String failureDescription = "";
+  /**
+   * Fetch the commit from GitHub before notifying, instead of trusting a full length sha as is
+   */
+  private boolean verifyCommit = false;
+  /**
+   * Only log a warning when the terminal status can not be set, instead of failing the build
+   */
+  private boolean bestEffort = false;
+  /**
+   * Only search description regexes in this many KB at the end of the build log, 0 searches the
+   * whole log
+   */
+  private int logScanTailKb = 0;
+  /**
+   * Use the last match of description regexes instead of the first one
+   */
+  private boolean logScanReverse = false;
 
   @DataBoundConstructor
   public GitStatusWrapperBuilder(List<BuildStep> buildSteps) {
@@ -292,15 +347,17 @@ public class GitStatusWrapperBuilder extends Builder {
         resolveEnvOrDefault(this.successDescription, this.description, env, vr));
     statusWrapperData.setFailureDescription(
         resolveEnvOrDefault(this.failureDescription, this.description, env, vr));
+    DescriptionPatterns.validate(statusWrapperData.getSuccessDescription());
+    DescriptionPatterns.validate(statusWrapperData.getFailureDescription());
 
-    GHRepository repository = GitHubHelper
-        .getRepoIfValid(statusWrapperData.credentialsId, statusWrapperData.gitApiUrl,
-            JenkinsHelpers.getProxy(statusWrapperData.gitApiUrl), statusWrapperData.account,
-            statusWrapperData.repo, build.getParent());
-
-    GHCommit commit = repository.getCommit(statusWrapperData.sha);
+    StatusTarget target = new StatusTarget(statusWrapperData.credentialsId,
+        statusWrapperData.gitApiUrl, statusWrapperData.account, statusWrapperData.repo,
+        statusWrapperData.sha, statusWrapperData.gitHubContext, verifyCommit,
+        build.getParent().getFullName());
 
-    setStatus(listener, repository, commit, GHCommitState.PENDING);
+    // The build steps do not wait for the PENDING status, the final status is queued behind it
+    // on the same target and both are checked once the steps are over
+    CompletableFuture<Void> pending = setStatus(listener, target, GHCommitState.PENDING);
 
     boolean everyStepSuccessful = true;
 
@@ -312,32 +369,64 @@ public class GitStatusWrapperBuilder extends Builder {
         }
       }
     } catch (IOException | InterruptedException ioe) {
-      setStatus(listener, repository, commit, GHCommitState.FAILURE);
+      awaitStatus(listener, target, GHCommitState.FAILURE, pending);
       throw ioe;
     }
 
     if (everyStepSuccessful) {
-      setStatus(listener, repository, commit, GHCommitState.SUCCESS);
+      awaitStatus(listener, target, GHCommitState.SUCCESS, pending);
     } else {
-      setStatus(listener, repository, commit, GHCommitState.FAILURE);
+      awaitStatus(listener, target, GHCommitState.FAILURE, pending);
     }
     return everyStepSuccessful;
   }
 
-  private void setStatus(BuildListener listener, GHRepository repository, GHCommit commit,
+  /**
+   * Set the final status and wait for it and the PENDING one
+   */
+  private void awaitStatus(BuildListener listener, StatusTarget target, GHCommitState state,
+      CompletableFuture<Void> pending) throws IOException, InterruptedException {
+    // Queued first so that it supersedes a PENDING status still waiting for its turn
+    CompletableFuture<Void> published;
+    try {
+      published = setStatus(listener, target, state);
+    } catch (IOException | RuntimeException e) {
+      StatusPublisher.discard(pending);
+      throw e;
+    }
+    awaitStatus(listener, GHCommitState.PENDING, pending);
+    awaitStatus(listener, state, published);
+  }
+
+  /**
+   * Wait for a status, a failure is only logged with bestEffort
+   */
+  private void awaitStatus(BuildListener listener, GHCommitState state,
+      CompletableFuture<Void> published) throws IOException, InterruptedException {
+    try {
+      StatusPublisher.await(published);
+    } catch (IOException | RuntimeException e) {
+      if (!bestEffort) {
+        throw e;
+      }
+      listener.getLogger().println(String.format(Messages.GitStatusWrapper_FAIL_TO_SET_STATUS(),
+          state, e.getMessage()));
+    }
+  }
+
+  private CompletableFuture<Void> setStatus(BuildListener listener, StatusTarget target,
       GHCommitState state)
       throws IOException {
     listener.getLogger().println(
         String.format(Messages.GitStatusWrapper_PRIMARY_LOG_TEMPLATE(),
             state,
-            statusWrapperData.getGitHubContext(), commit.getSHA1())
+            statusWrapperData.getGitHubContext(), target.getSha())
     );
 
     String description = getDescriptionForState(state);
 
-    repository.createCommitStatus(commit.getSHA1(),
-        state, statusWrapperData.getTargetUrl(), description,
-        statusWrapperData.getGitHubContext());
+    return StatusPublisher.publish(new StatusUpdate(target, state,
+        statusWrapperData.getTargetUrl(), description, build.getExternalizableId()));
   }
 
   /***
@@ -358,13 +447,14 @@ public class GitStatusWrapperBuilder extends Builder {
         : statusWrapperData.getFailureDescription();
 
     String result = description;
-    if (description.startsWith("/") && description.endsWith("/")) {
+    if (DescriptionPatterns.isRegex(description)) {
       //Regex pattern found, resolve
-      String descRegex = description.substring(1, description.length() - 1);
-      final String buildLog = JenkinsHelpers.getBuildLogOutput(build);
-      Matcher matcher = Pattern.compile(descRegex, Pattern.MULTILINE).matcher(buildLog);
-      if (matcher.find()) {
-        result = matcher.group(1);
+      String descRegex = DescriptionPatterns.regexOf(description);
+      String match = LogPatternMatcher
+          .find(build, DescriptionPatterns.compile(descRegex), logScanTailKb * 1024L,
+              logScanReverse);
+      if (match != null) {
+        result = match;
       } else {
         listener.getLogger().println(
             String.format(Messages.GitStatusWrapper_FAIL_TO_MATCH_REGEX(), descRegex));
@@ -414,8 +504,17 @@ public class GitStatusWrapperBuilder extends Builder {
       return Messages.GitStatusWrapper_DISPLAY_NAME();
     }
 
-    public ListBoxModel doFillCredentialsIdItems(@AncestorInPath Item project) {
-      return JenkinsHelpers.fillCredentialsIdItems(project);
+    public ListBoxModel doFillCredentialsIdItems(@AncestorInPath Item project,
+        @QueryParameter String gitApiUrl, @QueryParameter String credentialsId) {
+      return JenkinsHelpers.fillCredentialsIdItems(project, gitApiUrl, credentialsId);
+    }
+
+    public FormValidation doCheckSuccessDescription(@QueryParameter String value) {
+      return DescriptionPatterns.check(value);
+    }
+
+    public FormValidation doCheckFailureDescription(@QueryParameter String value) {
+      return DescriptionPatterns.check(value);
     }
 
     @POST
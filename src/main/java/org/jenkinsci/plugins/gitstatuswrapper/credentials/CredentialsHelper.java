@@ -25,22 +25,190 @@ package org.jenkinsci.plugins.gitstatuswrapper.credentials;
 
 import com.cloudbees.plugins.credentials.Credentials;
 import com.cloudbees.plugins.credentials.CredentialsMatchers;
+import com.cloudbees.plugins.credentials.CredentialsNameProvider;
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
+import com.cloudbees.plugins.credentials.common.AbstractIdCredentialsListBoxModel;
+import com.cloudbees.plugins.credentials.common.IdCredentials;
+import com.cloudbees.plugins.credentials.common.StandardListBoxModel;
+import com.cloudbees.plugins.credentials.common.UsernamePasswordCredentials;
+import com.cloudbees.plugins.credentials.domains.DomainRequirement;
+import com.cloudbees.plugins.credentials.domains.URIRequirementBuilder;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
 import hudson.model.Item;
+import hudson.model.ItemGroup;
+import hudson.model.Saveable;
+import hudson.model.User;
+import hudson.model.listeners.SaveableListener;
 import hudson.security.ACL;
+import hudson.util.ListBoxModel;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import static com.cloudbees.plugins.credentials.CredentialsProvider.lookupCredentials;
 
+/**
+ * Looks credentials up by id in the context of an item.
+ *
+ * Found credentials are cached per type, item and id, so posting a status does not walk every
+ * credential visible to the item. The cache is cleared whenever a credential store may have
+ * changed: the global store, a folder or a user was saved. Entries also expire after a TTL, for
+ * providers that do not save through Jenkins.
+ *
+ * The listings shown in the credentials dropdown are cached and cleared the same way.
+ */
 public class CredentialsHelper {
 
+  private static final long TTL_SECONDS = Long
+      .getLong(CredentialsHelper.class.getName() + ".ttlSeconds", 300L);
+
+  private static final Cache<List<Object>, Credentials> CREDENTIALS = CacheBuilder.newBuilder()
+      .maximumSize(1000)
+      .expireAfterWrite(TTL_SECONDS, TimeUnit.SECONDS)
+      .build();
+  private static final Cache<List<Object>, ListBoxModel> LISTINGS = CacheBuilder.newBuilder()
+      .maximumSize(100)
+      .expireAfterWrite(TTL_SECONDS, TimeUnit.SECONDS)
+      .build();
+
   public static <T extends Credentials> T getCredentials(@Nonnull Class<T> type,
       @Nonnull String credentialsId, Item context) {
+    List<Object> key = Arrays.<Object>asList(type,
+        context == null ? null : context.getFullName(), credentialsId);
+    Credentials cached = CREDENTIALS.getIfPresent(key);
+    if (cached != null) {
+      return type.cast(cached);
+    }
+    T credentials = lookup(type, credentialsId, context);
+    // Missing credentials are not cached, they are reported right away and fixed by the user
+    if (credentials != null) {
+      CREDENTIALS.put(key, credentials);
+    }
+    return credentials;
+  }
+
+  private static <T extends Credentials> T lookup(@Nonnull Class<T> type,
+      @Nonnull String credentialsId, Item context) {
     return CredentialsMatchers.firstOrNull(lookupCredentials(
         type, context, ACL.SYSTEM,
         Collections.emptyList()), CredentialsMatchers.allOf(
         CredentialsMatchers.withId(credentialsId),
         CredentialsMatchers.instanceOf(type)));
   }
+
+  /**
+   * List the username/password and GitHub App credentials of the item usable against the given
+   * url, with an empty choice first
+   *
+   * @param url api url the credentials are for, any url if null
+   * @param credentialsId current value of the field, listed even if it does not match anymore
+   * @return a copy of the cached listing
+   */
+  public static ListBoxModel listCredentials(Item context, @CheckForNull String url,
+      @CheckForNull String credentialsId) {
+    List<Object> key = Arrays.<Object>asList(context == null ? null : context.getFullName(), url);
+    ListBoxModel listing = LISTINGS.getIfPresent(key);
+    if (listing == null) {
+      listing = list(context, url);
+      LISTINGS.put(key, listing);
+    }
+    AbstractIdCredentialsListBoxModel<?, ?> copy = new StandardListBoxModel();
+    for (ListBoxModel.Option option : listing) {
+      copy.add(new ListBoxModel.Option(option.name, option.value, option.selected));
+    }
+    if (credentialsId != null && !credentialsId.isEmpty()) {
+      copy.includeCurrentValue(credentialsId);
+    }
+    return copy;
+  }
+
+  private static ListBoxModel list(Item context, @CheckForNull String url) {
+    // Plain username/password credentials are not standard ones, so they are looked up directly
+    Map<String, IdCredentials> found = new LinkedHashMap<>();
+    for (List<DomainRequirement> requirements : requirementsOf(url)) {
+      for (Class<? extends Credentials> type : Arrays.<Class<? extends Credentials>>asList(
+          UsernamePasswordCredentials.class, GitHubAppCredentials.class)) {
+        for (Credentials credentials : lookupCredentials(type, context, ACL.SYSTEM,
+            requirements)) {
+          if (credentials instanceof IdCredentials) {
+            IdCredentials identified = (IdCredentials) credentials;
+            if (!found.containsKey(identified.getId())) {
+              found.put(identified.getId(), identified);
+            }
+          }
+        }
+      }
+    }
+    // Named here, the list box models only describe standard credentials
+    ListBoxModel listing = new StandardListBoxModel().includeEmptyValue();
+    for (IdCredentials credentials : found.values()) {
+      listing.add(CredentialsNameProvider.name(credentials), credentials.getId());
+    }
+    return listing;
+  }
+
+  /**
+   * Domain requirements under which credentials for the url may be stored: the api url itself, and
+   * the web host of github.com style urls where the api host is api.&lt;web host&gt;
+   */
+  private static List<List<DomainRequirement>> requirementsOf(@CheckForNull String url) {
+    if (url == null) {
+      return Collections.singletonList(Collections.<DomainRequirement>emptyList());
+    }
+    List<List<DomainRequirement>> requirements = new ArrayList<>();
+    requirements.add(URIRequirementBuilder.fromUri(url).build());
+    String host;
+    try {
+      host = URI.create(url).getHost();
+    } catch (IllegalArgumentException e) {
+      host = null;
+    }
+    if (host != null && host.startsWith("api.")) {
+      requirements.add(URIRequirementBuilder.create().withHostname(host.substring(4)).build());
+    }
+    return requirements;
+  }
+
+  /**
+   * Forget the cached credentials, for example after they were changed outside of Jenkins
+   */
+  public static void invalidateAll() {
+    CREDENTIALS.invalidateAll();
+    LISTINGS.invalidateAll();
+  }
+
+  @Initializer(after = InitMilestone.PLUGINS_STARTED)
+  public static void clearOnStart() {
+    // Only matters when several controllers run in one JVM, as in tests
+    invalidateAll();
+  }
+
+  /**
+   * Clears the cache when the global store, a folder (and its store) or a user (and its store) was
+   * saved. Saves of jobs and builds are ignored.
+   */
+  @Extension
+  public static final class Invalidator extends SaveableListener {
+
+    @Override
+    public void onChange(Saveable o, XmlFile file) {
+      if (o instanceof SystemCredentialsProvider || o instanceof ItemGroup
+          || o instanceof User) {
+        invalidateAll();
+      }
+    }
+  }
 }
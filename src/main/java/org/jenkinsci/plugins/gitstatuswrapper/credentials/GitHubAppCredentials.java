@@ -0,0 +1,83 @@
+/*
+MIT License
+
+Copyright (c) 2019 Zachary Sherwin
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitstatuswrapper.credentials;
+
+import com.cloudbees.plugins.credentials.CredentialsScope;
+import com.cloudbees.plugins.credentials.impl.BaseStandardCredentials;
+import hudson.Extension;
+import hudson.util.FormValidation;
+import hudson.util.Secret;
+import org.apache.commons.lang.StringUtils;
+import org.jenkinsci.plugins.gitstatuswrapper.Messages;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.QueryParameter;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Credentials of a GitHub App: statuses are posted with short lived installation tokens of the app,
+ * which have a rate limit per installation instead of per user.
+ */
+public class GitHubAppCredentials extends BaseStandardCredentials {
+
+  private static final long serialVersionUID = 1L;
+
+  private final String appId;
+  private final Secret privateKey;
+
+  @DataBoundConstructor
+  public GitHubAppCredentials(CredentialsScope scope, String id, String description,
+      @Nonnull String appId, @Nonnull Secret privateKey) {
+    super(scope, id, description);
+    this.appId = appId;
+    this.privateKey = privateKey;
+  }
+
+  @Nonnull
+  public String getAppId() {
+    return appId;
+  }
+
+  /**
+   * @return the PEM encoded private key of the app, PKCS#1 as downloaded from GitHub or PKCS#8
+   */
+  @Nonnull
+  public Secret getPrivateKey() {
+    return privateKey;
+  }
+
+  @Extension
+  public static class DescriptorImpl extends BaseStandardCredentialsDescriptor {
+
+    @Override
+    public String getDisplayName() {
+      return Messages.GitHubAppCredentials_DISPLAY_NAME();
+    }
+
+    public FormValidation doCheckAppId(@QueryParameter String value) {
+      return StringUtils.isNumeric(value) && !value.isEmpty() ? FormValidation.ok()
+          : FormValidation.error(Messages.GitHubAppCredentials_INVALID_APP_ID());
+    }
+  }
+}
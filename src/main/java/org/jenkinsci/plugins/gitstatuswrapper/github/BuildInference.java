@@ -0,0 +1,85 @@
+/*
+MIT License
+
+Copyright (c) 2019 Zachary Sherwin
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitstatuswrapper.github;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import hudson.model.Run;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import javax.annotation.Nonnull;
+
+/**
+ * Values inferred from a build, computed once and shared by all the wrappers of that build.
+ *
+ * Builds are held weakly, nothing is saved with them. The values are inferred again once an
+ * action was added to the build, as a later checkout may change the remote or the commit.
+ */
+final class BuildInference {
+
+  interface Inference {
+
+    String infer() throws IOException;
+  }
+
+  private static final Cache<Run<?, ?>, BuildInference> BUILDS = CacheBuilder.newBuilder()
+      .weakKeys()
+      .build();
+
+  private final Map<String, String> values = new HashMap<>();
+  /**
+   * Number of actions of the build when the values were inferred
+   */
+  private int actions = -1;
+
+  static BuildInference of(@Nonnull Run<?, ?> run) {
+    try {
+      return BUILDS.get(run, BuildInference::new);
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  /**
+   * @return the value inferred for the name, inferring it if not yet known. Failures are not
+   * remembered.
+   */
+  synchronized String get(@Nonnull Run<?, ?> run, @Nonnull String name,
+      @Nonnull Inference inference) throws IOException {
+    int current = run.getActions().size();
+    if (current != actions) {
+      values.clear();
+      actions = current;
+    }
+    String value = values.get(name);
+    if (value == null) {
+      value = inference.infer();
+      values.put(name, value);
+    }
+    return value;
+  }
+}
@@ -0,0 +1,125 @@
+/*
+MIT License
+
+Copyright (c) 2019 Zachary Sherwin
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitstatuswrapper.github;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stops calling a GitHub api that keeps being unavailable.
+ *
+ * After a number of consecutive failures the circuit opens and calls fail right away instead of
+ * waiting for connection timeouts. Once the open period elapsed, a single call is let through:
+ * its success closes the circuit, its failure opens it again.
+ */
+final class CircuitBreaker {
+
+  private static final Logger LOGGER = Logger.getLogger(CircuitBreaker.class.getName());
+
+  private static final int FAILURE_THRESHOLD = Math
+      .max(1, Integer.getInteger(CircuitBreaker.class.getName() + ".failureThreshold", 5));
+  private static final long OPEN_MILLIS = TimeUnit.SECONDS
+      .toMillis(Integer.getInteger(CircuitBreaker.class.getName() + ".openSeconds", 30));
+
+  private static final Map<String, CircuitBreaker> BREAKERS = new ConcurrentHashMap<>();
+
+  private final String gitApiUrl;
+  private int failures;
+  /**
+   * Time the circuit can be tried again, 0 while closed
+   */
+  private long openUntil;
+  private boolean probing;
+
+  CircuitBreaker(String gitApiUrl) {
+    this.gitApiUrl = gitApiUrl;
+  }
+
+  /**
+   * @return the breaker of an api, shared by every credential using it
+   */
+  static CircuitBreaker of(String gitApiUrl) {
+    return BREAKERS.computeIfAbsent(gitApiUrl == null ? "" : gitApiUrl, CircuitBreaker::new);
+  }
+
+  /**
+   * @return whether a call can be made now, if so its outcome must be reported
+   */
+  synchronized boolean allow(long now) {
+    if (openUntil == 0) {
+      return true;
+    }
+    if (now < openUntil || probing) {
+      return false;
+    }
+    probing = true;
+    return true;
+  }
+
+  synchronized void succeeded() {
+    if (openUntil != 0) {
+      LOGGER.log(Level.INFO, "GitHub api {0} is available again", gitApiUrl);
+    }
+    failures = 0;
+    openUntil = 0;
+    probing = false;
+  }
+
+  synchronized void failed(long now) {
+    failures++;
+    if (probing || failures >= FAILURE_THRESHOLD) {
+      if (openUntil == 0) {
+        LOGGER.log(Level.WARNING,
+            "GitHub api {0} failed {1} times in a row, pausing calls for {2}s",
+            new Object[]{gitApiUrl, failures, TimeUnit.MILLISECONDS.toSeconds(OPEN_MILLIS)});
+      }
+      openUntil = now + OPEN_MILLIS;
+    }
+    probing = false;
+  }
+
+  /**
+   * Report a call that failed before the api answered, for instance on missing credentials. It
+   * tells nothing about the api, a probe it was is let through again.
+   */
+  synchronized void aborted() {
+    probing = false;
+  }
+
+  /**
+   * Thrown instead of calling an api whose circuit is open
+   */
+  static final class OpenException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    OpenException(String message) {
+      super(message);
+    }
+  }
+}
@@ -0,0 +1,277 @@
+/*
+MIT License
+
+Copyright (c) 2019 Zachary Sherwin
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitstatuswrapper.github;
+
+import hudson.Util;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.Proxy;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Nonnull;
+import net.sf.json.JSONObject;
+import org.jenkinsci.plugins.gitstatuswrapper.Messages;
+import org.jenkinsci.plugins.gitstatuswrapper.credentials.GitHubAppCredentials;
+import org.kohsuke.github.HttpException;
+
+/**
+ * Installation tokens of GitHub Apps.
+ *
+ * The app authenticates with a JWT signed by its private key, finds its installation on the
+ * account and exchanges the JWT for an installation token valid one hour. Tokens are shared by
+ * all wrappers and refreshed a few minutes before they expire, concurrent refreshes of a token
+ * share a single exchange.
+ */
+final class GitHubAppAuth {
+
+  private static final Logger LOGGER = Logger.getLogger(GitHubAppAuth.class.getName());
+
+  /**
+   * Tokens expiring in less than this are refreshed
+   */
+  private static final long REFRESH_AHEAD = TimeUnit.MINUTES
+      .toMillis(Integer.getInteger(GitHubAppAuth.class.getName() + ".refreshAheadMinutes", 5));
+  private static final int TIMEOUT_MILLIS = (int) TimeUnit.SECONDS.toMillis(30);
+  private static final String ACCEPT = "application/vnd.github.machine-man-preview+json";
+
+  private static final ConcurrentMap<List<Object>, Long> INSTALLATIONS =
+      new ConcurrentHashMap<>();
+  private static final ConcurrentMap<List<Object>, Token> TOKENS = new ConcurrentHashMap<>();
+  private static final SingleFlight<List<Object>, Token> EXCHANGES = new SingleFlight<>();
+
+  private GitHubAppAuth() {
+  }
+
+  /**
+   * @return a token of the app installation on the account, valid for a few minutes at least
+   */
+  static String installationToken(@Nonnull GitHubAppCredentials app, @Nonnull String gitApiUrl,
+      Proxy proxy, @Nonnull String account) throws IOException {
+    List<Object> key = Arrays.<Object>asList(app.getAppId(),
+        Util.getDigestOf(app.getPrivateKey().getPlainText()), gitApiUrl, account);
+    Token token = TOKENS.get(key);
+    if (token != null && token.isFresh(System.currentTimeMillis())) {
+      return token.value;
+    }
+    return EXCHANGES.run(key, () -> {
+      Token current = TOKENS.get(key);
+      if (current != null && current.isFresh(System.currentTimeMillis())) {
+        return current;
+      }
+      Token created = createToken(app, gitApiUrl, proxy, account);
+      TOKENS.put(key, created);
+      return created;
+    }).value;
+  }
+
+  /**
+   * Check the app can authenticate against the api
+   *
+   * @return the name of the app
+   */
+  static String check(@Nonnull GitHubAppCredentials app, @Nonnull String gitApiUrl, Proxy proxy)
+      throws IOException {
+    return call("GET", gitApiUrl + "/app", jwt(app, System.currentTimeMillis()), proxy)
+        .optString("name");
+  }
+
+  static void invalidateAll() {
+    TOKENS.clear();
+    INSTALLATIONS.clear();
+  }
+
+  private static Token createToken(GitHubAppCredentials app, String gitApiUrl, Proxy proxy,
+      String account) throws IOException {
+    String jwt = jwt(app, System.currentTimeMillis());
+    List<Object> installationKey = Arrays.<Object>asList(app.getAppId(), gitApiUrl, account);
+    Long installation = INSTALLATIONS.get(installationKey);
+    if (installation == null) {
+      installation = installation(app, jwt, gitApiUrl, proxy, account);
+      INSTALLATIONS.put(installationKey, installation);
+    }
+    JSONObject response;
+    try {
+      response = call("POST", gitApiUrl + "/app/installations/" + installation + "/access_tokens",
+          jwt, proxy);
+    } catch (HttpException e) {
+      // The app may have been installed again with another id
+      INSTALLATIONS.remove(installationKey);
+      throw e;
+    }
+    LOGGER.log(Level.FINE, "Created a token of GitHub App {0} for {1}",
+        new Object[]{app.getAppId(), account});
+    return new Token(response.getString("token"),
+        Instant.parse(response.getString("expires_at")).toEpochMilli());
+  }
+
+  private static long installation(GitHubAppCredentials app, String jwt, String gitApiUrl,
+      Proxy proxy, String account) throws IOException {
+    try {
+      return call("GET", gitApiUrl + "/users/" + account + "/installation", jwt, proxy)
+          .getLong("id");
+    } catch (HttpException e) {
+      if (e.getResponseCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+        throw new IllegalArgumentException(
+            String.format(Messages.GitHubAppAuth_NOT_INSTALLED(), app.getAppId(), account), e);
+      }
+      throw e;
+    }
+  }
+
+  private static JSONObject call(String method, String url, String jwt, Proxy proxy)
+      throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL(url)
+        .openConnection(proxy == null ? Proxy.NO_PROXY : proxy);
+    connection.setConnectTimeout(TIMEOUT_MILLIS);
+    connection.setReadTimeout(TIMEOUT_MILLIS);
+    connection.setRequestMethod(method);
+    connection.setRequestProperty("Authorization", "Bearer " + jwt);
+    connection.setRequestProperty("Accept", ACCEPT);
+    if ("POST".equals(method)) {
+      connection.setDoOutput(true);
+      connection.getOutputStream().close();
+    }
+    int code = connection.getResponseCode();
+    if (code >= HttpURLConnection.HTTP_BAD_REQUEST) {
+      String body = read(connection.getErrorStream());
+      throw new HttpException(body, code, connection.getResponseMessage(), url);
+    }
+    // json-lib ships with the core, jackson is only a test dependency of the plugin
+    return JSONObject.fromObject(read(connection.getInputStream()));
+  }
+
+  private static String read(InputStream in) throws IOException {
+    if (in == null) {
+      return "";
+    }
+    try (InputStream body = in) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[4096];
+      int read;
+      while ((read = body.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+      return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+  }
+
+  /**
+   * @return a JWT of the app valid nine minutes, issued a minute in the past to allow for clock
+   * drift with GitHub
+   */
+  static String jwt(@Nonnull GitHubAppCredentials app, long now) {
+    long issuedAt = TimeUnit.MILLISECONDS.toSeconds(now) - 60;
+    try {
+      String header = encode("{\"alg\":\"RS256\",\"typ\":\"JWT\"}");
+      String payload = encode("{\"iat\":" + issuedAt + ",\"exp\":" + (issuedAt + 600)
+          + ",\"iss\":" + JSON.writeValueAsString(app.getAppId()) + "}");
+      Signature signature = Signature.getInstance("SHA256withRSA");
+      signature.initSign(privateKey(app.getPrivateKey().getPlainText()));
+      signature.update((header + "." + payload).getBytes(StandardCharsets.US_ASCII));
+      return header + "." + payload + "."
+          + Base64.getUrlEncoder().withoutPadding().encodeToString(signature.sign());
+    } catch (GeneralSecurityException | IOException | IllegalArgumentException e) {
+      throw new IllegalArgumentException(Messages.GitHubAppAuth_INVALID_PRIVATE_KEY(), e);
+    }
+  }
+
+  private static String encode(String json) {
+    return Base64.getUrlEncoder().withoutPadding()
+        .encodeToString(json.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Read a PEM encoded RSA key, either PKCS#1 as GitHub provides it or PKCS#8
+   */
+  static PrivateKey privateKey(@Nonnull String pem) throws GeneralSecurityException {
+    byte[] der = Base64.getMimeDecoder()
+        .decode(pem.replaceAll("-----(BEGIN|END) [A-Z ]+-----", ""));
+    if (pem.contains("BEGIN RSA PRIVATE KEY")) {
+      der = pkcs8(der);
+    }
+    return KeyFactory.getInstance("RSA").generatePrivate(new PKCS8EncodedKeySpec(der));
+  }
+
+  /**
+   * Wrap a PKCS#1 RSA key in a PKCS#8 structure, the only private key encoding the JDK reads
+   */
+  private static byte[] pkcs8(byte[] pkcs1) {
+    // version 0 and the rsaEncryption algorithm identifier
+    byte[] prefix = {0x02, 0x01, 0x00, 0x30, 0x0d, 0x06, 0x09, 0x2a, (byte) 0x86, 0x48,
+        (byte) 0x86, (byte) 0xf7, 0x0d, 0x01, 0x01, 0x01, 0x05, 0x00};
+    ByteArrayOutputStream key = new ByteArrayOutputStream();
+    key.write(prefix, 0, prefix.length);
+    writeTag(key, 0x04, pkcs1.length);
+    key.write(pkcs1, 0, pkcs1.length);
+    ByteArrayOutputStream sequence = new ByteArrayOutputStream();
+    writeTag(sequence, 0x30, key.size());
+    byte[] content = key.toByteArray();
+    sequence.write(content, 0, content.length);
+    return sequence.toByteArray();
+  }
+
+  private static void writeTag(ByteArrayOutputStream der, int tag, int length) {
+    der.write(tag);
+    if (length < 0x80) {
+      der.write(length);
+      return;
+    }
+    int bytes = (Integer.SIZE - Integer.numberOfLeadingZeros(length) + 7) / 8;
+    der.write(0x80 | bytes);
+    for (int i = bytes - 1; i >= 0; i--) {
+      der.write(length >>> (8 * i));
+    }
+  }
+
+  private static final class Token {
+
+    private final String value;
+    private final long expiresAt;
+
+    Token(String value, long expiresAt) {
+      this.value = value;
+      this.expiresAt = expiresAt;
+    }
+
+    boolean isFresh(long now) {
+      return expiresAt - REFRESH_AHEAD > now;
+    }
+  }
+}
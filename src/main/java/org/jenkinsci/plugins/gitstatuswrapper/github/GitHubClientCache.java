@@ -0,0 +1,211 @@
+/*
+MIT License
+
+Copyright (c) 2019 Zachary Sherwin
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitstatuswrapper.github;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.MapMaker;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.io.IOException;
+import java.net.Proxy;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import org.kohsuke.github.GHRepository;
+import org.kohsuke.github.GitHub;
+
+/**
+ * Controller wide cache of validated {@link GitHub} clients.
+ *
+ * Entries are keyed by credentials id, api url, proxy and a digest of the credential secret, so a
+ * changed password never reuses a client built with the old one. Clients that skipped the
+ * credential check are kept apart from validated ones. Entries expire after a fixed TTL and the
+ * cache is bounded in size.
+ *
+ * The repository handles looked up with a client are cached alongside it, so the wrappers resumed
+ * after a restart share one lookup per repository instead of each repeating it.
+ */
+public final class GitHubClientCache {
+
+  private static final long TTL_MINUTES = Long
+      .getLong(GitHubClientCache.class.getName() + ".ttlMinutes", 30L);
+  private static final int MAX_SIZE = Integer
+      .getInteger(GitHubClientCache.class.getName() + ".maxSize", 200);
+  private static final int MAX_REPOSITORIES = Integer
+      .getInteger(GitHubClientCache.class.getName() + ".maxRepositories", 1000);
+
+  private static final Cache<Key, GitHub> CLIENTS = CacheBuilder.newBuilder()
+      .maximumSize(MAX_SIZE)
+      .expireAfterWrite(TTL_MINUTES, TimeUnit.MINUTES)
+      .build();
+
+  private static final Cache<RepositoryKey, GHRepository> REPOSITORIES = CacheBuilder
+      .newBuilder()
+      .maximumSize(MAX_REPOSITORIES)
+      .expireAfterWrite(TTL_MINUTES, TimeUnit.MINUTES)
+      .build();
+
+  /**
+   * Client each repository handle was looked up with, handles compared by identity
+   */
+  private static final Map<GHRepository, GitHub> ROOTS = new MapMaker().weakKeys().makeMap();
+
+  private GitHubClientCache() {
+  }
+
+  /**
+   * Returns the cached client for the key, building (and validating) it with the loader if absent.
+   * Concurrent callers for the same key wait for a single load.
+   */
+  public static GitHub get(@Nonnull Key key, @Nonnull Callable<GitHub> loader)
+      throws IOException {
+    return load(CLIENTS, key, loader);
+  }
+
+  /**
+   * Returns the cached handle of a repository looked up with the given client, looking it up with
+   * the loader if absent. Concurrent callers for the same repository wait for a single lookup.
+   *
+   * @param github client the repository is looked up with, compared by identity
+   * @param name owner/repo of the repository
+   */
+  public static GHRepository repository(@Nonnull GitHub github, @Nonnull String name,
+      @Nonnull Callable<GHRepository> loader) throws IOException {
+    return load(REPOSITORIES, new RepositoryKey(github, name),
+        () -> bind(loader.call(), github));
+  }
+
+  /**
+   * Remember the client a repository handle was looked up with
+   *
+   * @return the repository handle
+   */
+  public static GHRepository bind(@Nonnull GHRepository repository, @Nonnull GitHub github) {
+    ROOTS.put(repository, github);
+    return repository;
+  }
+
+  /**
+   * @return the client the repository handle was looked up with, null if unknown
+   */
+  @CheckForNull
+  public static GitHub clientOf(@Nonnull GHRepository repository) {
+    return ROOTS.get(repository);
+  }
+
+  private static <K, V> V load(Cache<K, V> cache, K key, Callable<V> loader) throws IOException {
+    try {
+      return cache.get(key, loader);
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+
+  public static void invalidate(@Nonnull Key key) {
+    CLIENTS.invalidate(key);
+  }
+
+  public static void invalidateAll() {
+    CLIENTS.invalidateAll();
+    REPOSITORIES.invalidateAll();
+  }
+
+  public static final class Key {
+
+    private final String credentialsId;
+    private final String gitApiUrl;
+    private final Proxy proxy;
+    private final String secretDigest;
+    private final boolean validated;
+
+    public Key(String credentialsId, String gitApiUrl, Proxy proxy, String secretDigest,
+        boolean validated) {
+      this.credentialsId = credentialsId;
+      this.gitApiUrl = gitApiUrl;
+      this.proxy = proxy;
+      this.secretDigest = secretDigest;
+      this.validated = validated;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key key = (Key) o;
+      return Objects.equals(credentialsId, key.credentialsId)
+          && Objects.equals(gitApiUrl, key.gitApiUrl)
+          && Objects.equals(proxy, key.proxy)
+          && Objects.equals(secretDigest, key.secretDigest)
+          && validated == key.validated;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(credentialsId, gitApiUrl, proxy, secretDigest, validated);
+    }
+  }
+
+  private static final class RepositoryKey {
+
+    private final GitHub github;
+    private final String name;
+
+    RepositoryKey(GitHub github, String name) {
+      this.github = github;
+      this.name = name;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof RepositoryKey)) {
+        return false;
+      }
+      RepositoryKey key = (RepositoryKey) o;
+      return github == key.github && name.equals(key.name);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(github) + name.hashCode();
+    }
+  }
+}
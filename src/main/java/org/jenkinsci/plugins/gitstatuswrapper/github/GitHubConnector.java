@@ -0,0 +1,107 @@
+/*
+MIT License
+
+Copyright (c) 2019 Zachary Sherwin
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitstatuswrapper.github;
+
+import com.squareup.okhttp.Cache;
+import com.squareup.okhttp.ConnectionPool;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.OkUrlFactory;
+import com.squareup.okhttp.Protocol;
+import hudson.Util;
+import java.io.File;
+import java.net.Proxy;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import jenkins.model.Jenkins;
+import org.kohsuke.github.HttpConnector;
+import org.kohsuke.github.extras.OkHttpConnector;
+
+/**
+ * Connectors of the GitHub clients, sharing one pool of connections and caching responses on
+ * disk under JENKINS_HOME.
+ *
+ * Connections are kept alive between requests so steady-state status posts skip the TLS
+ * handshake, and requests to the same host are multiplexed over one HTTP/2 connection when the
+ * JVM negotiates it. GitHub answers with an ETag or Last-Modified, cached responses are
+ * revalidated with a conditional request and a 304 answer does not count against the rate
+ * limit. Each api url has its own bounded cache directory, shared by all the clients of that
+ * url.
+ */
+final class GitHubConnector {
+
+  /**
+   * okhttp for the shared pool, urlconnection for the default connector of github-api, which
+   * neither pools HTTP/2 connections nor caches responses
+   */
+  private static final String CONNECTOR = System
+      .getProperty(GitHubConnector.class.getName() + ".connector", "okhttp");
+
+  private static final int POOL_SIZE = Integer
+      .getInteger(GitHubConnector.class.getName() + ".poolSize", 16);
+
+  private static final int KEEP_ALIVE_SECONDS = Integer
+      .getInteger(GitHubConnector.class.getName() + ".keepAliveSeconds", 300);
+
+  private static final int CACHE_SIZE_MB = Integer
+      .getInteger(GitHubConnector.class.getName() + ".cacheSizeMb", 20);
+
+  private static final ConnectionPool POOL = new ConnectionPool(POOL_SIZE,
+      TimeUnit.SECONDS.toMillis(KEEP_ALIVE_SECONDS));
+
+  private static final ConcurrentMap<List<Object>, OkHttpClient> CLIENTS =
+      new ConcurrentHashMap<>();
+
+  private GitHubConnector() {
+  }
+
+  /**
+   * @return a connector of the shared pool, null to use the default connector of github-api
+   */
+  @CheckForNull
+  static HttpConnector of(@Nonnull String gitApiUrl, @Nonnull Proxy proxy) {
+    if (!"okhttp".equals(CONNECTOR)) {
+      return null;
+    }
+    Jenkins jenkins = Jenkins.getInstanceOrNull();
+    File directory = CACHE_SIZE_MB <= 0 || jenkins == null ? null : new File(
+        jenkins.getRootDir(), "caches/gitStatusWrapper-" + Util.getDigestOf(gitApiUrl));
+    // Clients differ by their cache and proxy only, they all share the connections of POOL
+    OkHttpClient client = CLIENTS.computeIfAbsent(Arrays.asList(directory, proxy), key -> {
+      OkHttpClient created = new OkHttpClient();
+      created.setConnectionPool(POOL);
+      created.setProtocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1));
+      created.setProxy(proxy);
+      if (directory != null) {
+        created.setCache(new Cache(directory, CACHE_SIZE_MB * 1024L * 1024L));
+      }
+      return created;
+    });
+    return new OkHttpConnector(new OkUrlFactory(client));
+  }
+}
@@ -23,15 +23,25 @@ SOFTWARE.
  */
 package org.jenkinsci.plugins.gitstatuswrapper.github;
 
+import com.cloudbees.plugins.credentials.Credentials;
 import com.cloudbees.plugins.credentials.common.UsernamePasswordCredentials;
+import hudson.Util;
 import hudson.model.Item;
 import hudson.model.ItemGroup;
 import hudson.model.Job;
 import hudson.model.Run;
+import hudson.plugins.git.Revision;
 import hudson.plugins.git.util.BuildData;
 import hudson.util.FormValidation;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.net.HttpURLConnection;
 import java.net.Proxy;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
 import javax.annotation.Nonnull;
 import jenkins.model.Jenkins;
 import jenkins.plugins.git.AbstractGitSCMSource;
@@ -44,11 +54,15 @@ import org.jenkinsci.plugins.github_branch_source.GitHubSCMSource;
 import org.jenkinsci.plugins.github_branch_source.PullRequestSCMRevision;
 import org.jenkinsci.plugins.gitstatuswrapper.Messages;
 import org.jenkinsci.plugins.gitstatuswrapper.credentials.CredentialsHelper;
+import org.jenkinsci.plugins.gitstatuswrapper.credentials.GitHubAppCredentials;
 import org.jenkinsci.plugins.gitstatuswrapper.jenkins.JenkinsHelpers;
 import org.kohsuke.github.GHCommit;
 import org.kohsuke.github.GHRepository;
 import org.kohsuke.github.GitHub;
 import org.kohsuke.github.GitHubBuilder;
+import org.kohsuke.github.HttpConnector;
+import org.kohsuke.github.HttpException;
+import org.kohsuke.github.RateLimitHandler;
 
 public class GitHubHelper {
 
@@ -59,6 +73,7 @@ public class GitHubHelper {
   public static final String NULL_CREDENTIALS_ID = Messages.GitHubHelper_NULL_CREDENTIALS_ID();
   public static final String CREDENTIALS_LOGIN_INVALID = Messages
       .GitHubHelper_CREDENTIALS_LOGIN_INVALID();
+  public static final String APP_NEEDS_ACCOUNT = Messages.GitHubHelper_APP_NEEDS_ACCOUNT();
   public static final String INVALID_REPO = Messages.GitHubHelper_INVALID_REPO();
   public static final String INVALID_COMMIT = Messages.GitHubHelper_INVALID_COMMIT();
 
@@ -70,36 +85,216 @@ public class GitHubHelper {
 
   public static final String GIT_SCM_COMMIT_ENV_NAME = "GIT_COMMIT";
 
+  /**
+   * Address repositories directly as owner/repo instead of validating the credentials and the
+   * account first
+   */
+  public static final boolean FAST_REPO_LOOKUP = !Boolean
+      .getBoolean(GitHubHelper.class.getName() + ".disableFastRepoLookup");
+
+  private static final Pattern SHA1_PATTERN = Pattern.compile("^[0-9a-fA-F]{40}$");
+
+  private static final Logger LOGGER = Logger.getLogger(GitHubHelper.class.getName());
+
+  private static final SingleFlight<List<Object>, GHRepository> REPO_LOOKUPS =
+      new SingleFlight<>();
+  private static final SingleFlight<List<Object>, String> COMMIT_LOOKUPS = new SingleFlight<>();
+
   public static GitHub getGitHubIfValid(String credentialsId, @Nonnull String gitApiUrl,
       Proxy proxy, Item context) throws IOException {
+    return getGitHubIfValid(credentialsId, gitApiUrl, proxy, context, true);
+  }
+
+  /**
+   * Get a validated GitHub client for the given credentials
+   *
+   * @param useCache reuse a previously validated client from {@link GitHubClientCache}, skipping
+   * the credential check round trip
+   */
+  public static GitHub getGitHubIfValid(String credentialsId, @Nonnull String gitApiUrl,
+      Proxy proxy, Item context, boolean useCache) throws IOException {
+    return getGitHubIfValid(credentialsId, gitApiUrl, proxy, null, context, useCache);
+  }
+
+  /**
+   * Get a validated GitHub client for the given credentials
+   *
+   * @param account account the statuses are posted to, GitHub App credentials authenticate as the
+   * installation of the app on it
+   * @param useCache reuse a previously validated client from {@link GitHubClientCache}, skipping
+   * the credential check round trip
+   */
+  public static GitHub getGitHubIfValid(String credentialsId, @Nonnull String gitApiUrl,
+      Proxy proxy, String account, Item context, boolean useCache) throws IOException {
+    Login login = login(credentialsId, gitApiUrl, proxy, account, context);
+    if (!useCache) {
+      return buildGitHub(login, gitApiUrl, proxy, true);
+    }
+    return GitHubClientCache.get(clientKey(credentialsId, gitApiUrl, proxy, login, true),
+        () -> buildGitHub(login, gitApiUrl, proxy, true));
+  }
+
+  /**
+   * Get a GitHub client for the given credentials without checking them against the api first,
+   * invalid credentials will surface on the first real call instead
+   */
+  public static GitHub getGitHub(String credentialsId, @Nonnull String gitApiUrl, Proxy proxy,
+      Item context) throws IOException {
+    return getGitHub(credentialsId, gitApiUrl, proxy, null, context);
+  }
+
+  /**
+   * Get a GitHub client for the given credentials without checking them against the api first,
+   * invalid credentials will surface on the first real call instead
+   *
+   * @param account account the statuses are posted to, GitHub App credentials authenticate as the
+   * installation of the app on it
+   */
+  public static GitHub getGitHub(String credentialsId, @Nonnull String gitApiUrl, Proxy proxy,
+      String account, Item context) throws IOException {
+    Login login = login(credentialsId, gitApiUrl, proxy, account, context);
+    return GitHubClientCache.get(clientKey(credentialsId, gitApiUrl, proxy, login, false),
+        () -> buildGitHub(login, gitApiUrl, proxy, false));
+  }
+
+  private static Login login(String credentialsId, String gitApiUrl, Proxy proxy, String account,
+      Item context) throws IOException {
     if (credentialsId == null || credentialsId.isEmpty()) {
       throw new IllegalArgumentException(NULL_CREDENTIALS_ID);
     }
-    UsernamePasswordCredentials credentials = CredentialsHelper
-        .getCredentials(UsernamePasswordCredentials.class, credentialsId, context);
-    if (credentials == null) {
+    // A single cached lookup, whatever the kind of the credentials
+    Credentials credentials = CredentialsHelper
+        .getCredentials(Credentials.class, credentialsId, context);
+    if (credentials instanceof UsernamePasswordCredentials) {
+      UsernamePasswordCredentials password = (UsernamePasswordCredentials) credentials;
+      return new Login(password.getUsername(), password.getPassword().getPlainText(), false);
+    }
+    if (!(credentials instanceof GitHubAppCredentials)) {
       throw new IllegalArgumentException(CREDENTIALS_ID_NOT_EXISTS);
     }
+    GitHubAppCredentials app = (GitHubAppCredentials) credentials;
+    if (account == null || account.isEmpty()) {
+      throw new IllegalArgumentException(APP_NEEDS_ACCOUNT);
+    }
+    return new Login(null, GitHubAppAuth.installationToken(app, gitApiUrl, proxy, account), true);
+  }
+
+  /**
+   * @return whether the credentials are GitHub App ones, whose clients change with the
+   * installation token
+   */
+  public static boolean isAppCredentials(String credentialsId, Item context) {
+    return credentialsId != null && !credentialsId.isEmpty() && CredentialsHelper
+        .getCredentials(Credentials.class, credentialsId, context) instanceof GitHubAppCredentials;
+  }
+
+  private static GitHubClientCache.Key clientKey(String credentialsId, String gitApiUrl,
+      Proxy proxy, Login login, boolean validated) {
+    return new GitHubClientCache.Key(credentialsId, gitApiUrl, proxy,
+        Util.getDigestOf(login.user + ":" + login.token), validated);
+  }
+
+  private static GitHub buildGitHub(Login login, @Nonnull String gitApiUrl, Proxy proxy,
+      boolean validate) throws IOException {
     GitHubBuilder githubBuilder = new GitHubBuilder();
 
-    githubBuilder
-        .withOAuthToken(credentials.getPassword().getPlainText(), credentials.getUsername());
+    githubBuilder.withOAuthToken(login.token, login.user);
+    // Fail instead of blocking a publisher thread until the quota resets, RateLimitScheduler
+    // decides what waits
+    githubBuilder.withRateLimitHandler(RateLimitHandler.FAIL);
 
     githubBuilder = githubBuilder.withProxy(proxy);
     githubBuilder = githubBuilder.withEndpoint(gitApiUrl);
+    // Replaces the connector set with the proxy, the pooled one uses the proxy too
+    HttpConnector connector = GitHubConnector.of(gitApiUrl, proxy);
+    if (connector != null) {
+      githubBuilder.withConnector(connector);
+    }
 
     GitHub github = githubBuilder.build();
 
-    if (github.isCredentialValid()) {
+    // Installation tokens can not read the user, getting one already checked the app
+    if (!validate || login.app || github.isCredentialValid()) {
       return github;
     } else {
       throw new IllegalArgumentException(CREDENTIALS_LOGIN_INVALID);
     }
   }
 
+  /**
+   * What a client authenticates with: the password of username/password credentials, or an
+   * installation token of GitHub App credentials
+   */
+  private static final class Login {
+
+    private final String user;
+    private final String token;
+    private final boolean app;
+
+    Login(String user, String token, boolean app) {
+      this.user = user;
+      this.token = token;
+      this.app = app;
+    }
+  }
+
+  /**
+   * Resolve the repository to notify.
+   *
+   * Unless disabled with the {@link #FAST_REPO_LOOKUP} flag, the repository is addressed directly
+   * as owner/repo with a single call. Only when that call fails with a 401 or 404 the slower path
+   * validating the credentials and the account is used, to report a precise error.
+   *
+   * Handles are shared through {@link GitHubClientCache}, so wrappers on the same repository, and
+   * those resumed at once after a restart, look it up only once. Identical lookups running at the
+   * same time, as from the branches of a parallel block, share a single call, its fallback and its
+   * failure included.
+   */
   public static GHRepository getRepoIfValid(String credentialsId, String gitApiUrl, Proxy proxy,
       String account, String repo, Item context) throws IOException {
-    GitHub github = getGitHubIfValid(credentialsId, gitApiUrl, proxy, context);
+    return REPO_LOOKUPS.run(Arrays.asList(credentialsId, gitApiUrl, proxy, account, repo, context),
+        () -> lookupRepo(credentialsId, gitApiUrl, proxy, account, repo, context));
+  }
+
+  private static GHRepository lookupRepo(String credentialsId, String gitApiUrl, Proxy proxy,
+      String account, String repo, Item context) throws IOException {
+    if (FAST_REPO_LOOKUP) {
+      try {
+        GitHub github = getGitHub(credentialsId, gitApiUrl, proxy, account, context);
+        String name = account + "/" + repo;
+        return GitHubClientCache.repository(github, name, () -> {
+          GHRepository repository = github.getRepository(name);
+          if (repository == null) {
+            throw new FileNotFoundException(name);
+          }
+          return repository;
+        });
+      } catch (FileNotFoundException e) {
+        LOGGER.log(Level.FINE, "Fast lookup of " + account + "/" + repo + " failed", e);
+      } catch (HttpException e) {
+        if (e.getResponseCode() != HttpURLConnection.HTTP_UNAUTHORIZED) {
+          throw e;
+        }
+        LOGGER.log(Level.FINE, "Fast lookup of " + account + "/" + repo + " failed", e);
+      }
+    }
+    return getRepoValidated(credentialsId, gitApiUrl, proxy, account, repo, context);
+  }
+
+  private static GHRepository getRepoValidated(String credentialsId, String gitApiUrl,
+      Proxy proxy, String account, String repo, Item context) throws IOException {
+    GitHub github = getGitHubIfValid(credentialsId, gitApiUrl, proxy, account, context,
+        !FAST_REPO_LOOKUP);
+    if (FAST_REPO_LOOKUP) {
+      // Fallback of the fast lookup with a freshly validated client, not worth caching
+      return GitHubClientCache.bind(getUserRepo(github, account, repo), github);
+    }
+    return GitHubClientCache
+        .repository(github, account + "/" + repo, () -> getUserRepo(github, account, repo));
+  }
+
+  private static GHRepository getUserRepo(GitHub github, String account, String repo)
+      throws IOException {
     GHRepository repository = github.getUser(account).getRepository(repo);
     if (repository == null) {
       throw new IllegalArgumentException(INVALID_REPO);
@@ -118,26 +313,109 @@ public class GitHubHelper {
     return commit;
   }
 
+  /**
+   * Get the sha1 to post statuses on.
+   *
+   * A full length hex sha1 is used as is, without fetching the commit, unless verify is set.
+   * Anything else (abbreviated shas, refs) is resolved through the commit api, once for all the
+   * callers resolving the same sha at the same time.
+   *
+   * @param repository repository that owns the commit
+   * @param sha the configured or inferred sha
+   * @param verify fetch the commit even if the sha looks valid
+   * @return full sha1 of the commit
+   */
+  public static String resolveCommitSha(GHRepository repository, String sha, boolean verify)
+      throws IOException {
+    if (!verify && isFullSha1(sha)) {
+      return sha;
+    }
+    return COMMIT_LOOKUPS.run(Arrays.asList(repository, sha), () -> {
+      GHCommit commit = repository.getCommit(sha);
+      if (commit == null) {
+        throw new IllegalArgumentException(INVALID_COMMIT);
+      }
+      return commit.getSHA1();
+    });
+  }
+
+  public static boolean isFullSha1(String sha) {
+    return sha != null && SHA1_PATTERN.matcher(sha).matches();
+  }
+
+  /**
+   * Infer the repository from the git data of the build, once per build
+   */
   public static String inferBuildRepo(Run<?, ?> run) throws IOException {
-    return getRemoteData(run, 4).replace(".git", "");
+    return BuildInference.of(run).get(run, "repo", () -> inferRemote(run).getRepo());
   }
 
+  /**
+   * Infer the account from the git data of the build, once per build
+   */
   public static String inferBuildAccount(Run<?, ?> run) throws IOException {
-    return getRemoteData(run, 3);
+    return BuildInference.of(run).get(run, "account", () -> inferRemote(run).getOwner());
   }
 
-  private static String getRemoteData(Run<?, ?> run, Integer index) throws IOException {
-    BuildData data = run.getAction(BuildData.class);
-    if (data != null && data.getRemoteUrls() != null && !data.getRemoteUrls().isEmpty()) {
-      String remoteUrl = data.remoteUrls.iterator().next();
-      return remoteUrl.split("\\/")[index];
+  /**
+   * Find the remote the build checked out. With several checkouts, the one that built the commit
+   * of the build is preferred, otherwise the first one with a GitHub like remote.
+   */
+  private static GitRemoteUrl inferRemote(Run<?, ?> run) throws IOException {
+    List<BuildData> checkouts = run.getActions(BuildData.class);
+    String sha = checkouts.size() > 1 ? inferBuiltSha(run) : null;
+    GitRemoteUrl first = null;
+    for (BuildData data : checkouts) {
+      GitRemoteUrl remote = firstRemote(data);
+      if (remote == null) {
+        continue;
+      }
+      if (sha == null) {
+        return remote;
+      }
+      Revision built = data.getLastBuiltRevision();
+      if (built != null && sha.equalsIgnoreCase(built.getSha1String())) {
+        return remote;
+      }
+      if (first == null) {
+        first = remote;
+      }
+    }
+    if (first != null) {
+      return first;
     }
-
     throw new IOException("Unable to infer git repo from build data");
   }
 
+  private static GitRemoteUrl firstRemote(BuildData data) {
+    if (data.getRemoteUrls() != null) {
+      for (String url : data.getRemoteUrls()) {
+        GitRemoteUrl remote = GitRemoteUrl.parse(url);
+        if (remote != null) {
+          return remote;
+        }
+      }
+    }
+    return null;
+  }
 
+  private static String inferBuiltSha(Run<?, ?> run) {
+    try {
+      return inferBuildCommitSHA1(run);
+    } catch (IOException | IllegalArgumentException e) {
+      LOGGER.log(Level.FINE, "No commit to pick the remote of " + run + " with", e);
+      return null;
+    }
+  }
+
+  /**
+   * Infer the commit the build is running on, once per build
+   */
   public static String inferBuildCommitSHA1(Run<?, ?> run) throws IOException {
+    return BuildInference.of(run).get(run, "sha", () -> inferCommitSHA1(run));
+  }
+
+  private static String inferCommitSHA1(Run<?, ?> run) throws IOException {
     SCMRevisionAction action = run.getAction(SCMRevisionAction.class);
     if (action != null) {
       SCMRevision revision = action.getRevision();
@@ -157,7 +435,19 @@ public class GitHubHelper {
     }
   }
 
+  /**
+   * Infer the credentials of the GitHub source of the job, once per build
+   */
   public static String inferBuildCredentialsId(Run<?, ?> run) {
+    try {
+      return BuildInference.of(run).get(run, "credentialsId", () -> inferCredentialsId(run));
+    } catch (IOException e) {
+      // Not thrown by the inference
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static String inferCredentialsId(Run<?, ?> run) {
     try {
       String credentialsID = getSource(run).getCredentialsId();
       if (credentialsID != null) {
@@ -190,8 +480,15 @@ public class GitHubHelper {
       Item context) {
     Jenkins.getInstance().checkPermission(Job.CONFIGURE);
     try {
+      GitHubAppCredentials app = credentialsId == null || credentialsId.isEmpty() ? null
+          : CredentialsHelper.getCredentials(GitHubAppCredentials.class, credentialsId, context);
+      if (app != null) {
+        // The installation depends on the account, only the app itself can be checked here
+        GitHubAppAuth.check(app, gitApiUrl, JenkinsHelpers.getProxy(gitApiUrl));
+        return FormValidation.ok("Success");
+      }
       GitHubHelper.getGitHubIfValid(credentialsId, gitApiUrl, JenkinsHelpers.getProxy(gitApiUrl),
-          context);
+          context, false);
       return FormValidation.ok("Success");
     } catch (Exception e) {
       return FormValidation.error(e.getMessage());
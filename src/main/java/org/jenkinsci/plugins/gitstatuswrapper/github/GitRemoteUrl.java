@@ -0,0 +1,111 @@
+/*
+MIT License
+
+Copyright (c) 2019 Zachary Sherwin
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitstatuswrapper.github;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.annotation.CheckForNull;
+
+/**
+ * Host, owner and name of the repository a git remote url points to.
+ *
+ * Understands the url forms git accepts for a remote repository:
+ * <ul>
+ * <li>{@code https://github.com/owner/repo.git}, also with credentials, a port or http</li>
+ * <li>{@code https://ghe.example.com/context/path/owner/repo}, GitHub Enterprise behind a
+ * context path</li>
+ * <li>{@code ssh://git@github.com:22/owner/repo.git} and {@code git://github.com/owner/repo}</li>
+ * <li>{@code git@github.com:owner/repo.git}, the scp like syntax</li>
+ * </ul>
+ * The owner and the repository are the last two segments of the path. Parsed urls are cached, a
+ * build infers from the same few remotes over and over.
+ */
+final class GitRemoteUrl {
+
+  private static final Pattern URL = Pattern.compile(
+      // scheme://[user@]host[:port]/ or [user@]host: but not scheme:///
+      "^(?:[a-zA-Z][a-zA-Z0-9+.-]*://(?:[^@/]+@)?([^/:]+)(?::\\d*)?/|(?:[^@/]+@)?([^/:]+):(?!//))"
+          // [context/path/]owner/repo[.git][/]
+          + "(?:[^?#]*/)?([^/?#]+)/([^/?#]+?)(?:\\.git)?/?$");
+
+  private static final Cache<String, Optional<GitRemoteUrl>> PARSED = CacheBuilder.newBuilder()
+      .maximumSize(1000)
+      .build();
+
+  private final String host;
+  private final String owner;
+  private final String repo;
+
+  private GitRemoteUrl(String host, String owner, String repo) {
+    this.host = host;
+    this.owner = owner;
+    this.repo = repo;
+  }
+
+  /**
+   * @return the parsed url, null if it does not point to an owner/repo on a remote host
+   */
+  @CheckForNull
+  static GitRemoteUrl parse(@CheckForNull String url) {
+    if (url == null) {
+      return null;
+    }
+    try {
+      return PARSED.get(url, () -> Optional.ofNullable(doParse(url.trim()))).orElse(null);
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  private static GitRemoteUrl doParse(String url) {
+    Matcher matcher = URL.matcher(url);
+    if (!matcher.matches()) {
+      return null;
+    }
+    String host = matcher.group(1) != null ? matcher.group(1) : matcher.group(2);
+    return new GitRemoteUrl(host, matcher.group(3), matcher.group(4));
+  }
+
+  String getHost() {
+    return host;
+  }
+
+  String getOwner() {
+    return owner;
+  }
+
+  String getRepo() {
+    return repo;
+  }
+
+  @Override
+  public String toString() {
+    return host + "/" + owner + "/" + repo;
+  }
+}
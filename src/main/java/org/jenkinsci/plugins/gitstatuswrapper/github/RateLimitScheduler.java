@@ -0,0 +1,218 @@
+/*
+MIT License
+
+Copyright (c) 2019 Zachary Sherwin
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitstatuswrapper.github;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import org.kohsuke.github.GHRateLimit;
+import org.kohsuke.github.GitHub;
+import org.kohsuke.github.HttpException;
+
+/**
+ * Paces status posts against the GitHub rate limit of each credential.
+ *
+ * The quota left is learned from the rate limit headers of the responses. PENDING statuses are
+ * spread over what is left of the rate limit window with a token bucket, and are dropped when
+ * they would wait too long or when the quota falls under a reserve. Terminal statuses are never
+ * paced and may use the reserve, they only wait for the window to reset once the quota is
+ * exhausted.
+ */
+final class RateLimitScheduler {
+
+  private static final Logger LOGGER = Logger.getLogger(RateLimitScheduler.class.getName());
+
+  /**
+   * Returned by {@link #delay(StatusUpdate)} when the update should be dropped
+   */
+  static final long SHED = -1;
+
+  private static final int BURST = Math
+      .max(1, Integer.getInteger(RateLimitScheduler.class.getName() + ".burst", 20));
+  private static final int RESERVE_PERCENT = Integer
+      .getInteger(RateLimitScheduler.class.getName() + ".reservePercent", 10);
+  private static final long MAX_PENDING_DELAY = TimeUnit.SECONDS.toMillis(Integer
+      .getInteger(RateLimitScheduler.class.getName() + ".maxPendingDelaySeconds", 30));
+  private static final long MAX_TERMINAL_DELAY = TimeUnit.SECONDS.toMillis(Integer
+      .getInteger(RateLimitScheduler.class.getName() + ".maxTerminalDelaySeconds", 300));
+  /**
+   * Assumed wait when the quota is exhausted but its reset time is unknown
+   */
+  private static final long DEFAULT_RESET = TimeUnit.MINUTES.toMillis(1);
+
+  private static final Map<String, Budget> BUDGETS = new ConcurrentHashMap<>();
+
+  private RateLimitScheduler() {
+  }
+
+  /**
+   * @return milliseconds to wait before posting the update, 0 to post it now or {@link #SHED} to
+   * drop it
+   */
+  static long delay(@Nonnull StatusUpdate update) {
+    return budget(update.getTarget())
+        .delay(update.isTerminal(), System.currentTimeMillis());
+  }
+
+  /**
+   * Record the quota left after a call made for the target
+   *
+   * @param github the client that made the call, its last response carries the quota
+   */
+  static void observe(@Nonnull StatusTarget target, @CheckForNull GitHub github) {
+    try {
+      GHRateLimit rateLimit = github == null ? null : github.lastRateLimit();
+      if (rateLimit != null) {
+        budget(target).observe(rateLimit.limit, rateLimit.remaining,
+            rateLimit.getResetDate().getTime());
+      }
+    } catch (RuntimeException e) {
+      LOGGER.log(Level.FINE, "Unable to read the rate limit of " + target, e);
+    }
+  }
+
+  /**
+   * Record a failed call made for the target, the quota is considered exhausted if it failed
+   * because of the rate limit
+   */
+  static void failed(@Nonnull StatusTarget target, Throwable failure) {
+    if (isRateLimited(failure)) {
+      LOGGER.log(Level.WARNING, "GitHub rate limit reached for {0} on {1}",
+          new Object[]{target.getCredentialsId(), target.getGitApiUrl()});
+      budget(target).exhausted(System.currentTimeMillis() + DEFAULT_RESET);
+    }
+  }
+
+  static boolean isRateLimited(Throwable failure) {
+    for (Throwable t = failure; t != null; t = t.getCause()) {
+      if (t instanceof HttpException) {
+        int code = ((HttpException) t).getResponseCode();
+        if (code == 429 || (code == HttpURLConnection.HTTP_FORBIDDEN && mentionsRateLimit(t))) {
+          return true;
+        }
+      } else if (t instanceof IOException && mentionsRateLimit(t)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean mentionsRateLimit(Throwable t) {
+    return t.getMessage() != null && t.getMessage().toLowerCase().contains("rate limit");
+  }
+
+  private static Budget budget(StatusTarget target) {
+    return BUDGETS.computeIfAbsent(target.getCredentialsId() + "@" + target.getGitApiUrl(),
+        key -> new Budget());
+  }
+
+  /**
+   * Quota of a single credential on a single api, unknown until a response was observed
+   */
+  static final class Budget {
+
+    private int limit = -1;
+    private int remaining = -1;
+    private long resetMillis;
+    private double tokens = BURST;
+    private long refilledMillis;
+
+    synchronized void observe(int limit, int remaining, long resetMillis) {
+      this.limit = limit;
+      this.remaining = remaining;
+      this.resetMillis = resetMillis;
+    }
+
+    synchronized void exhausted(long resetMillis) {
+      if (remaining != 0 || this.resetMillis < resetMillis) {
+        this.remaining = 0;
+        this.resetMillis = Math.max(this.resetMillis, resetMillis);
+      }
+    }
+
+    synchronized long delay(boolean terminal, long now) {
+      if (resetMillis > 0 && now >= resetMillis) {
+        // The window was reset since the last observation, assume the whole quota is back
+        remaining = limit;
+        resetMillis = 0;
+      }
+      if (remaining < 0) {
+        // Nothing observed yet, or an api without rate limit
+        return 0;
+      }
+      if (remaining == 0 && now < resetMillis) {
+        if (!terminal) {
+          return SHED;
+        }
+        // Past the maximal wait, post anyway and let the failure surface
+        return resetMillis - now <= MAX_TERMINAL_DELAY ? resetMillis - now : 0;
+      }
+      refill(now);
+      if (terminal) {
+        // Borrowed from the PENDING statuses to come, at most what the bucket holds so PENDING
+        // statuses are not starved beyond the next token
+        tokens = Math.max(0, tokens - 1);
+        remaining = Math.max(0, remaining - 1);
+        return 0;
+      }
+      if (remaining <= reserve()) {
+        return SHED;
+      }
+      if (tokens >= 1) {
+        tokens -= 1;
+        remaining--;
+        return 0;
+      }
+      double rate = rate(now);
+      long wait = rate <= 0 ? Long.MAX_VALUE : (long) Math.ceil((1 - tokens) / rate);
+      return wait > MAX_PENDING_DELAY ? SHED : wait;
+    }
+
+    private void refill(long now) {
+      if (refilledMillis > 0 && now > refilledMillis) {
+        tokens = Math.min(BURST, tokens + (now - refilledMillis) * rate(now));
+      }
+      refilledMillis = now;
+    }
+
+    /**
+     * @return PENDING tokens per millisecond, spreading the quota above the reserve over the rest
+     * of the window
+     */
+    private double rate(long now) {
+      long window = Math.max(1000, resetMillis - now);
+      return Math.max(0, remaining - reserve()) / (double) window;
+    }
+
+    private int reserve() {
+      return limit * RESERVE_PERCENT / 100;
+    }
+  }
+}
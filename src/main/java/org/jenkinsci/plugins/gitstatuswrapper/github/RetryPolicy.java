@@ -0,0 +1,103 @@
+/*
+MIT License
+
+Copyright (c) 2019 Zachary Sherwin
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitstatuswrapper.github;
+
+import java.io.FileNotFoundException;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.ThreadLocalRandom;
+import org.kohsuke.github.HttpException;
+
+/**
+ * Which failed status posts are retried, and after how long.
+ *
+ * Only transient failures are retried: server errors, timeouts, refused or reset connections and
+ * the rate limit. The wait doubles on every attempt, with jitter so builds failing at the same
+ * time do not retry in lockstep.
+ */
+final class RetryPolicy {
+
+  static final int MAX_RETRIES = Math
+      .max(0, Integer.getInteger(RetryPolicy.class.getName() + ".maxRetries", 3));
+  private static final long BASE_DELAY = Math
+      .max(1, Long.getLong(RetryPolicy.class.getName() + ".baseDelayMillis", 500L));
+  private static final long MAX_DELAY = Math
+      .max(BASE_DELAY, Long.getLong(RetryPolicy.class.getName() + ".maxDelayMillis", 10000L));
+
+  private RetryPolicy() {
+  }
+
+  /**
+   * @param attempt number of retries already made
+   * @return whether the failed post should be retried
+   */
+  static boolean shouldRetry(Throwable failure, int attempt) {
+    return attempt < MAX_RETRIES
+        && (isUnavailable(failure) || RateLimitScheduler.isRateLimited(failure));
+  }
+
+  /**
+   * @param attempt number of retries already made
+   * @return milliseconds to wait before the next attempt, between half and all of the exponential
+   * delay
+   */
+  static long backoff(int attempt) {
+    long delay = Math.min(MAX_DELAY, BASE_DELAY << Math.min(attempt, 20));
+    return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+  }
+
+  /**
+   * @return whether the failure is a response of the api, as opposed to a failure before or while
+   * calling it
+   */
+  static boolean isAnswered(Throwable failure) {
+    for (Throwable t = failure; t != null; t = t.getCause()) {
+      if (t instanceof HttpException || t instanceof FileNotFoundException) {
+        return true;
+      }
+    }
+    return RateLimitScheduler.isRateLimited(failure);
+  }
+
+  /**
+   * @return whether the failure means the api could not serve the request at all, as opposed to
+   * rejecting it
+   */
+  static boolean isUnavailable(Throwable failure) {
+    for (Throwable t = failure; t != null; t = t.getCause()) {
+      if (t instanceof SocketTimeoutException || t instanceof ConnectException
+          || t instanceof SocketException) {
+        return true;
+      }
+      if (t instanceof HttpException) {
+        int code = ((HttpException) t).getResponseCode();
+        if (code >= 500) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,577 @@
+/*
+MIT License
+
+Copyright (c) 2019 Zachary Sherwin
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitstatuswrapper.github;
+
+import hudson.Extension;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.PeriodicWork;
+import hudson.model.Run;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import jenkins.model.Jenkins;
+import org.jenkinsci.plugins.gitstatuswrapper.Messages;
+import org.kohsuke.github.GHCommitState;
+
+/**
+ * Disk backed record of the statuses to deliver.
+ *
+ * Every published status is recorded in a journal under JENKINS_HOME, and acknowledged once it
+ * was posted, superseded, dropped or rejected by GitHub. Records are written in batches by a
+ * dedicated thread and forced to the disk, so publishing never waits for the disk; the records of
+ * the last moments before a crash may be lost. Statuses left unacknowledged, because the
+ * controller restarted or GitHub was unavailable, are delivered again at startup and then
+ * periodically until they are too old. Only the newest status of a target is delivered again,
+ * older ones are acknowledged as superseded, also once a newer one was posted or rejected, and a
+ * PENDING status of a build that is not running anymore, or whose wrapper gave up without a final
+ * status, is replaced by an ERROR or discarded.
+ *
+ * The journal has a record per line made of tab separated, url encoded fields, and is compacted
+ * once enough statuses were acknowledged.
+ */
+public final class StatusOutbox {
+
+  private static final Logger LOGGER = Logger.getLogger(StatusOutbox.class.getName());
+
+  private static final boolean DISABLED = Boolean
+      .getBoolean(StatusOutbox.class.getName() + ".disabled");
+  /**
+   * Acknowledged lines kept in the journal before it is compacted
+   */
+  private static final int COMPACT_THRESHOLD = Integer
+      .getInteger(StatusOutbox.class.getName() + ".compactThreshold", 1000);
+  /**
+   * Statuses that could not be delivered for this long are given up
+   */
+  private static final long MAX_AGE = TimeUnit.HOURS
+      .toMillis(Integer.getInteger(StatusOutbox.class.getName() + ".maxAgeHours", 24));
+
+  /**
+   * Writes the journals, one batch at a time
+   */
+  private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(
+      new NamingThreadFactory(new DaemonThreadFactory(), "GitStatusWrapper outbox"));
+
+  private static final String ADD = "add";
+  private static final String ACK = "ack";
+  private static final String NULL = "~";
+
+  private static StatusOutbox instance;
+
+  private final File journal;
+  private final Map<Long, Entry> pending = new LinkedHashMap<>();
+  /**
+   * Records waiting for the writer, guarded by the outbox
+   */
+  private final List<String> unwritten = new ArrayList<>();
+  private boolean writeScheduled;
+  /**
+   * Only used by the writer once the outbox is open
+   */
+  private FileChannel channel;
+  private long nextId = 1;
+  private int acknowledged;
+
+  StatusOutbox(@Nonnull File journal) throws IOException {
+    this.journal = journal;
+    load();
+    rewrite(records());
+  }
+
+  /**
+   * @return the outbox of this controller, null if it is disabled or can not be opened
+   */
+  @CheckForNull
+  static synchronized StatusOutbox get() {
+    if (DISABLED) {
+      return null;
+    }
+    Jenkins jenkins = Jenkins.getInstanceOrNull();
+    if (jenkins == null) {
+      return null;
+    }
+    File journal = new File(jenkins.getRootDir(), StatusOutbox.class.getName() + ".log");
+    // The controller home only changes when several controllers run in one JVM, as in tests
+    if (instance == null || !instance.journal.equals(journal)) {
+      try {
+        instance = new StatusOutbox(journal);
+      } catch (IOException e) {
+        LOGGER.log(Level.WARNING, "Unable to open the status outbox " + journal
+            + ", statuses will not survive a restart", e);
+        return null;
+      }
+    }
+    return instance;
+  }
+
+  @Initializer(after = InitMilestone.JOB_LOADED)
+  public static void replay() {
+    StatusOutbox outbox = get();
+    if (outbox != null) {
+      outbox.redeliver();
+    }
+  }
+
+  /**
+   * Record the update and queue it
+   */
+  CompletableFuture<Void> publish(@Nonnull StatusUpdate update) {
+    Entry entry;
+    try {
+      entry = record(update);
+    } catch (IOException e) {
+      LOGGER.log(Level.WARNING, "Unable to record " + update + " in the status outbox", e);
+      return StatusPublisher.enqueue(update);
+    }
+    CompletableFuture<Void> published = send(entry);
+    synchronized (this) {
+      entry.published = published;
+    }
+    return published;
+  }
+
+  /**
+   * Acknowledge a published status that no newer status will follow, once it is not being posted
+   * anymore, so that it is not delivered again
+   *
+   * @param published the future returned when publishing it
+   */
+  synchronized void discard(@Nonnull CompletableFuture<Void> published) {
+    for (Entry entry : pending.values()) {
+      if (entry.published == published) {
+        if (entry.inFlight) {
+          entry.discarded = true;
+        } else {
+          acknowledge(entry);
+        }
+        return;
+      }
+    }
+  }
+
+  synchronized Entry record(@Nonnull StatusUpdate update) throws IOException {
+    Entry entry = new Entry(nextId, update);
+    entry.record = format(entry);
+    nextId++;
+    pending.put(entry.id, entry);
+    append(entry.record);
+    return entry;
+  }
+
+  /**
+   * Deliver again the statuses that are not being posted, newest of each target only
+   */
+  void redeliver() {
+    List<Entry> toSend = new ArrayList<>();
+    List<Entry> toCheck = new ArrayList<>();
+    synchronized (this) {
+      Map<StatusTarget, Entry> newest = new HashMap<>();
+      // Targets with a status being posted are left alone until it completes
+      Set<StatusTarget> busy = new HashSet<>();
+      for (Entry entry : pending.values()) {
+        newest.put(entry.update.getTarget(), entry);
+        if (entry.inFlight) {
+          busy.add(entry.update.getTarget());
+        }
+      }
+      long now = System.currentTimeMillis();
+      for (Entry entry : new ArrayList<>(pending.values())) {
+        StatusTarget target = entry.update.getTarget();
+        if (busy.contains(target)) {
+          continue;
+        }
+        if (newest.get(target) != entry) {
+          acknowledge(entry);
+        } else if (now - entry.time > MAX_AGE) {
+          LOGGER.log(Level.WARNING, "Giving up on {0}, it could not be delivered since {1}",
+              new Object[]{entry.update, new Date(entry.time)});
+          acknowledge(entry);
+        } else if (!entry.update.isTerminal() && entry.update.getRunId() != null) {
+          toCheck.add(entry);
+        } else {
+          toSend.add(entry);
+        }
+      }
+    }
+    // Builds are loaded outside of the lock, they may have to be read from the disk
+    for (Entry entry : toCheck) {
+      if (isBuilding(entry.update.getRunId())) {
+        toSend.add(entry);
+      } else {
+        Entry error = replaceStale(entry);
+        if (error != null) {
+          toSend.add(error);
+        }
+      }
+    }
+    for (Entry entry : toSend) {
+      LOGGER.log(Level.INFO, "Delivering {0} from the status outbox", entry.update);
+      send(entry);
+    }
+  }
+
+  /**
+   * Replace the PENDING status of a build that will not complete by an ERROR
+   *
+   * @return the ERROR to send, null if the PENDING status was superseded meanwhile
+   */
+  @CheckForNull
+  private synchronized Entry replaceStale(Entry entry) {
+    if (entry.inFlight || !pending.containsKey(entry.id)) {
+      return null;
+    }
+    for (Entry other : pending.values()) {
+      if (other.id > entry.id && other.update.getTarget().equals(entry.update.getTarget())) {
+        return null;
+      }
+    }
+    StatusUpdate update = entry.update;
+    Entry error;
+    try {
+      error = record(new StatusUpdate(update.getTarget(), GHCommitState.ERROR,
+          update.getTargetUrl(), Messages.StatusOutbox_BUILD_DID_NOT_COMPLETE(),
+          update.getRunId()));
+    } catch (IOException e) {
+      LOGGER.log(Level.WARNING, "Unable to record the end of " + update, e);
+      return null;
+    }
+    LOGGER.log(Level.INFO, "Build {0} is over, replacing {1} by an error",
+        new Object[]{update.getRunId(), update});
+    acknowledge(entry);
+    return error;
+  }
+
+  /**
+   * @return whether the build is still running, or will resume
+   */
+  private static boolean isBuilding(String runId) {
+    try (ACLContext ignored = ACL.as(ACL.SYSTEM)) {
+      Run<?, ?> run = Run.fromExternalizableId(runId);
+      return run != null && run.isBuilding();
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+  }
+
+  /**
+   * @return statuses not delivered yet, oldest first
+   */
+  synchronized List<StatusUpdate> getPending() {
+    List<StatusUpdate> updates = new ArrayList<>();
+    for (Entry entry : pending.values()) {
+      updates.add(entry.update);
+    }
+    return updates;
+  }
+
+  /**
+   * Wait for the records so far to be on the disk
+   */
+  void sync() throws InterruptedException, ExecutionException {
+    WRITER.submit(() -> { }).get();
+  }
+
+  private CompletableFuture<Void> send(Entry entry) {
+    synchronized (this) {
+      entry.inFlight = true;
+    }
+    CompletableFuture<Void> published = StatusPublisher.enqueue(entry.update);
+    published.whenComplete((ignored, failure) -> completed(entry, failure));
+    return published;
+  }
+
+  private synchronized void completed(Entry entry, Throwable failure) {
+    entry.inFlight = false;
+    if (!entry.discarded && failure != null && isTransient(StatusPublisher.unwrap(failure))) {
+      LOGGER.log(Level.FINE, "Keeping {0} in the status outbox", entry.update);
+      return;
+    }
+    acknowledge(entry);
+    // An older status kept after a transient failure must not overwrite this one later on
+    for (Entry older : new ArrayList<>(pending.values())) {
+      if (older.id < entry.id && !older.inFlight
+          && older.update.getTarget().equals(entry.update.getTarget())) {
+        acknowledge(older);
+      }
+    }
+  }
+
+  /**
+   * @return whether delivering the update again later may succeed
+   */
+  private static boolean isTransient(Throwable failure) {
+    return RetryPolicy.isUnavailable(failure) || RateLimitScheduler.isRateLimited(failure)
+        || failure instanceof CircuitBreaker.OpenException;
+  }
+
+  private void acknowledge(Entry entry) {
+    if (pending.remove(entry.id) == null) {
+      return;
+    }
+    append(ACK + "\t" + entry.id);
+    acknowledged++;
+  }
+
+  /**
+   * Queue a record for the writer, holding the outbox
+   */
+  private void append(String record) {
+    unwritten.add(record);
+    if (!writeScheduled) {
+      writeScheduled = true;
+      WRITER.execute(this::write);
+    }
+  }
+
+  /**
+   * Write the queued records, or the pending statuses only once enough were acknowledged
+   */
+  private void write() {
+    List<String> records;
+    boolean compact;
+    synchronized (this) {
+      writeScheduled = false;
+      compact = acknowledged >= COMPACT_THRESHOLD;
+      if (compact) {
+        records = records();
+        acknowledged = 0;
+      } else {
+        records = new ArrayList<>(unwritten);
+      }
+      unwritten.clear();
+    }
+    try {
+      if (compact) {
+        rewrite(records);
+      } else {
+        if (channel == null) {
+          channel = FileChannel.open(journal.toPath(), StandardOpenOption.CREATE,
+              StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        writeFully(channel, records);
+      }
+    } catch (IOException e) {
+      LOGGER.log(Level.WARNING, "Unable to write the status outbox " + journal
+          + ", statuses may be lost or posted again after a restart", e);
+      closeChannel();
+    }
+  }
+
+  private void load() throws IOException {
+    if (!journal.isFile()) {
+      return;
+    }
+    try (BufferedReader reader = Files.newBufferedReader(journal.toPath(),
+        StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.isEmpty()) {
+          continue;
+        }
+        try {
+          String[] fields = line.split("\t", -1);
+          if (ACK.equals(fields[0]) && fields.length == 2) {
+            pending.remove(Long.parseLong(fields[1]));
+          } else {
+            Entry entry = parse(fields);
+            entry.record = line;
+            pending.put(entry.id, entry);
+            nextId = Math.max(nextId, entry.id + 1);
+          }
+        } catch (IllegalArgumentException e) {
+          // A line cut short by a crash
+          LOGGER.log(Level.WARNING, "Skipping unreadable line of the status outbox " + journal, e);
+        }
+      }
+    }
+  }
+
+  /**
+   * @return the records of the pending statuses, holding the outbox
+   */
+  private List<String> records() {
+    List<String> records = new ArrayList<>();
+    for (Entry entry : pending.values()) {
+      records.add(entry.record);
+    }
+    return records;
+  }
+
+  /**
+   * Replace the journal with the given records
+   */
+  private void rewrite(List<String> records) throws IOException {
+    closeChannel();
+    File parent = journal.getAbsoluteFile().getParentFile();
+    if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+      throw new IOException("Unable to create " + parent);
+    }
+    File compacted = new File(journal.getPath() + ".tmp");
+    try (FileChannel out = FileChannel.open(compacted.toPath(), StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      writeFully(out, records);
+    }
+    Files.move(compacted.toPath(), journal.toPath(), StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private static void writeFully(FileChannel out, List<String> records) throws IOException {
+    if (records.isEmpty()) {
+      return;
+    }
+    StringBuilder lines = new StringBuilder();
+    for (String record : records) {
+      lines.append(record).append('\n');
+    }
+    ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+    while (buffer.hasRemaining()) {
+      out.write(buffer);
+    }
+    // Flushing only hands the bytes to the OS, they would not survive a power loss
+    out.force(false);
+  }
+
+  private void closeChannel() {
+    if (channel == null) {
+      return;
+    }
+    try {
+      channel.close();
+    } catch (IOException e) {
+      LOGGER.log(Level.FINE, "Unable to close the status outbox " + journal, e);
+    }
+    channel = null;
+  }
+
+  private static String format(Entry entry) throws IOException {
+    StatusUpdate update = entry.update;
+    StatusTarget target = update.getTarget();
+    StringBuilder record = new StringBuilder(ADD);
+    for (Object field : new Object[]{entry.id, entry.time, update.getState().name(),
+        update.getTargetUrl(), update.getDescription(), target.getCredentialsId(),
+        target.getGitApiUrl(), target.getAccount(), target.getRepo(), target.getSha(),
+        target.getGitHubContext(), target.isVerifyCommit(), target.getItemFullName(),
+        update.getRunId()}) {
+      record.append('\t').append(field == null ? NULL
+          : URLEncoder.encode(field.toString(), StandardCharsets.UTF_8.name()));
+    }
+    return record.toString();
+  }
+
+  private static Entry parse(String[] fields) throws UnsupportedEncodingException {
+    if (!ADD.equals(fields[0]) || fields.length != 15) {
+      throw new IllegalArgumentException("Unexpected record " + String.join(" ", fields));
+    }
+    String[] values = new String[fields.length];
+    for (int i = 1; i < fields.length; i++) {
+      values[i] = NULL.equals(fields[i]) ? null
+          : URLDecoder.decode(fields[i], StandardCharsets.UTF_8.name());
+    }
+    StatusTarget target = new StatusTarget(values[6], values[7], values[8], values[9], values[10],
+        values[11], Boolean.parseBoolean(values[12]), values[13]);
+    Entry entry = new Entry(Long.parseLong(values[1]), new StatusUpdate(target,
+        GHCommitState.valueOf(values[3]), values[4], values[5], values[14]));
+    entry.time = Long.parseLong(values[2]);
+    return entry;
+  }
+
+  static final class Entry {
+
+    private final long id;
+    private final StatusUpdate update;
+    private long time = System.currentTimeMillis();
+    /**
+     * The journal line of the status
+     */
+    private String record;
+    /**
+     * Whether the status is queued or being posted, guarded by the outbox
+     */
+    private boolean inFlight;
+    /**
+     * The future returned when it was published on this controller, guarded by the outbox
+     */
+    private CompletableFuture<Void> published;
+    /**
+     * Whether to acknowledge it once posted even if posting failed, guarded by the outbox
+     */
+    private boolean discarded;
+
+    private Entry(long id, StatusUpdate update) {
+      this.id = id;
+      this.update = update;
+    }
+  }
+
+  /**
+   * Delivers again the statuses that could not be posted while GitHub was unavailable
+   */
+  @Extension
+  public static final class Drainer extends PeriodicWork {
+
+    @Override
+    public long getRecurrencePeriod() {
+      return TimeUnit.MINUTES.toMillis(1);
+    }
+
+    @Override
+    protected void doRun() {
+      StatusOutbox outbox = get();
+      if (outbox != null) {
+        outbox.redeliver();
+      }
+    }
+  }
+}
@@ -0,0 +1,362 @@
+/*
+MIT License
+
+Copyright (c) 2019 Zachary Sherwin
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitstatuswrapper.github;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Nonnull;
+import jenkins.util.Timer;
+import org.jenkinsci.plugins.gitstatuswrapper.Messages;
+import org.kohsuke.github.GHRepository;
+
+/**
+ * Posts commit statuses in the background.
+ *
+ * Updates are handed to a bounded pool so callers, the CPS VM thread in particular, never wait on
+ * GitHub. Updates for the same {@link StatusTarget} are posted one after the other in submission
+ * order, so a slow PENDING can never land after the terminal status. Only the newest update of a
+ * target waits to be posted, older ones are coalesced away: a block finishing before its PENDING
+ * went out costs a single call.
+ *
+ * Posts are paced by {@link RateLimitScheduler}: a PENDING may wait for the rate limit or be
+ * dropped, while a terminal status queued behind a waiting PENDING is posted right away.
+ * Transient failures are retried by {@link RetryPolicy}, and calls to an api that keeps failing
+ * are cut short by its {@link CircuitBreaker}.
+ */
+public final class StatusPublisher {
+
+  private static final Logger LOGGER = Logger.getLogger(StatusPublisher.class.getName());
+
+  private static final int POOL_SIZE = Integer
+      .getInteger(StatusPublisher.class.getName() + ".poolSize", 4);
+  private static final int QUEUE_SIZE = Integer
+      .getInteger(StatusPublisher.class.getName() + ".queueSize", 1000);
+
+  /**
+   * How long a lane waits before submitting again when the queue is full
+   */
+  private static final long QUEUE_FULL_DELAY = 1000L;
+
+  private static final ExecutorService EXECUTOR = createExecutor();
+
+  /**
+   * Lanes of targets with updates being posted, guarded by itself
+   */
+  private static final Map<StatusTarget, Lane> LANES = new HashMap<>();
+
+  private StatusPublisher() {
+  }
+
+  private static ExecutorService createExecutor() {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, 60L,
+        TimeUnit.SECONDS, new LinkedBlockingQueue<>(QUEUE_SIZE),
+        new NamingThreadFactory(new DaemonThreadFactory(), "GitStatusWrapper publisher"));
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /**
+   * Queue a status to be posted
+   *
+   * If an update for the same target is still waiting to be posted, it is dropped in favour of
+   * this one and its future completes right away. The update is recorded in the
+   * {@link StatusOutbox} first, so it is delivered even if the controller restarts or GitHub is
+   * down in the meantime.
+   *
+   * @param update the status to post
+   * @return completes once the status was posted, or exceptionally if posting failed
+   */
+  public static CompletableFuture<Void> publish(@Nonnull StatusUpdate update) {
+    StatusOutbox outbox = StatusOutbox.get();
+    return outbox == null ? enqueue(update) : outbox.publish(update);
+  }
+
+  /**
+   * Give up on a published status that no final status will follow, so that the
+   * {@link StatusOutbox} does not deliver it again. A post already under way still completes.
+   *
+   * @param published the future returned by {@link #publish}
+   */
+  public static void discard(@Nonnull CompletableFuture<Void> published) {
+    StatusOutbox outbox = StatusOutbox.get();
+    if (outbox != null) {
+      outbox.discard(published);
+    }
+  }
+
+  /**
+   * Queue a status to be posted, without recording it in the outbox
+   */
+  static CompletableFuture<Void> enqueue(@Nonnull StatusUpdate update) {
+    final StatusTarget target = update.getTarget();
+    CompletableFuture<Void> published = new CompletableFuture<>();
+    CompletableFuture<Void> superseded = null;
+    Lane toDrain = null;
+    synchronized (LANES) {
+      Lane lane = LANES.get(target);
+      if (lane == null) {
+        lane = new Lane(target);
+        LANES.put(target, lane);
+      }
+      if (lane.next != null) {
+        LOGGER.log(Level.FINE, "Dropping {0}, superseded by {1}",
+            new Object[]{lane.next, update});
+        superseded = lane.nextPublished;
+      }
+      lane.next = update;
+      lane.nextPublished = published;
+      lane.nextAttempt = 0;
+      if (!lane.draining) {
+        lane.draining = true;
+        toDrain = lane;
+      } else if (lane.waiting && update.isTerminal()) {
+        lane.waiting = false;
+        toDrain = lane;
+      }
+    }
+    if (superseded != null) {
+      superseded.complete(null);
+    }
+    if (toDrain != null) {
+      schedule(toDrain);
+    }
+    return published;
+  }
+
+  /**
+   * Hand a lane to the pool
+   *
+   * The submitter never posts by itself, it may be the CPS VM thread. When the queue is full the
+   * lane keeps its update, newer ones still coalesce into it, and it is submitted again later.
+   */
+  private static void schedule(Lane lane) {
+    try {
+      EXECUTOR.execute(lane::drain);
+    } catch (RejectedExecutionException e) {
+      LOGGER.log(Level.FINE, "Publisher queue is full, delaying {0}", lane.target);
+      lane.wakeUpLater(QUEUE_FULL_DELAY);
+    }
+  }
+
+  private static void post(StatusUpdate update) throws IOException {
+    StatusTarget target = update.getTarget();
+    CircuitBreaker breaker = CircuitBreaker.of(target.getGitApiUrl());
+    if (!breaker.allow(System.currentTimeMillis())) {
+      throw new CircuitBreaker.OpenException(
+          String.format(Messages.StatusPublisher_API_UNAVAILABLE(), target.getGitApiUrl()));
+    }
+    LOGGER.log(Level.FINE, "Posting {0}", update);
+    GHRepository repository = null;
+    try {
+      repository = target.repository();
+      repository.createCommitStatus(target.resolvedSha(), update.getState(),
+          update.getTargetUrl(), update.getDescription(), target.getGitHubContext());
+      breaker.succeeded();
+    } catch (IOException | RuntimeException e) {
+      if (RetryPolicy.isUnavailable(e)) {
+        breaker.failed(System.currentTimeMillis());
+      } else if (RetryPolicy.isAnswered(e)) {
+        // The api answered, it is up
+        breaker.succeeded();
+      } else {
+        // Failed locally, like on missing credentials, the api was not reached
+        breaker.aborted();
+      }
+      RateLimitScheduler.failed(target, e);
+      throw e;
+    } finally {
+      if (repository != null) {
+        RateLimitScheduler.observe(target, GitHubClientCache.clientOf(repository));
+      }
+    }
+  }
+
+  /**
+   * Wait for a published status
+   *
+   * @throws IOException if the status could not be posted
+   */
+  public static void await(CompletableFuture<Void> published)
+      throws IOException, InterruptedException {
+    try {
+      published.get();
+    } catch (ExecutionException e) {
+      Throwable cause = unwrap(e);
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+
+  /**
+   * @return the original failure of a status post
+   */
+  public static Throwable unwrap(Throwable failure) {
+    while ((failure instanceof CompletionException || failure instanceof ExecutionException)
+        && failure.getCause() != null) {
+      failure = failure.getCause();
+    }
+    return failure;
+  }
+
+  /**
+   * Updates of a single target, drained by at most one pool thread at a time
+   */
+  private static final class Lane {
+
+    private final StatusTarget target;
+    private StatusUpdate next;
+    private CompletableFuture<Void> nextPublished;
+    /**
+     * Retries already made for the next update
+     */
+    private int nextAttempt;
+    private boolean draining;
+    /**
+     * Whether the lane waits for the rate limit, a wake up is scheduled
+     */
+    private boolean waiting;
+    private int wakeUps;
+
+    private Lane(StatusTarget target) {
+      this.target = target;
+    }
+
+    private void drain() {
+      while (true) {
+        StatusUpdate update;
+        CompletableFuture<Void> published;
+        int attempt;
+        synchronized (LANES) {
+          if (next == null) {
+            draining = false;
+            LANES.remove(target);
+            return;
+          }
+          update = next;
+          published = nextPublished;
+          attempt = nextAttempt;
+          next = null;
+          nextPublished = null;
+        }
+        long delay = RateLimitScheduler.delay(update);
+        if (delay == RateLimitScheduler.SHED) {
+          LOGGER.log(Level.FINE, "Dropping {0}, the rate limit is low", update);
+          published.complete(null);
+          continue;
+        }
+        if (delay > 0) {
+          if (park(update, published, attempt, delay)) {
+            return;
+          }
+          continue;
+        }
+        try {
+          post(update);
+          published.complete(null);
+        } catch (IOException | RuntimeException e) {
+          if (!RetryPolicy.shouldRetry(e, attempt)) {
+            published.completeExceptionally(e);
+            continue;
+          }
+          long backoff = RetryPolicy.backoff(attempt);
+          LOGGER.log(Level.FINE, "Retrying " + update + " in " + backoff + " ms", e);
+          if (park(update, published, attempt + 1, backoff)) {
+            return;
+          }
+        }
+      }
+    }
+
+    /**
+     * Put the update back and drain again once the delay elapsed
+     *
+     * @param attempt retries made for the update once it is drained again
+     * @return false if a newer update arrived meanwhile, the update is dropped in its favour
+     */
+    private boolean park(StatusUpdate update, CompletableFuture<Void> published, int attempt,
+        long delay) {
+      final int wakeUp;
+      final boolean parked;
+      synchronized (LANES) {
+        parked = next == null;
+        if (parked) {
+          next = update;
+          nextPublished = published;
+          nextAttempt = attempt;
+          waiting = true;
+        }
+        wakeUp = ++wakeUps;
+      }
+      if (!parked) {
+        published.complete(null);
+        return false;
+      }
+      LOGGER.log(Level.FINE, "Delaying {0} by {1} ms", new Object[]{update, delay});
+      scheduleWakeUp(wakeUp, delay);
+      return true;
+    }
+
+    /**
+     * Drain again once the delay elapsed, the next update stays in place
+     */
+    private void wakeUpLater(long delay) {
+      final int wakeUp;
+      synchronized (LANES) {
+        waiting = true;
+        wakeUp = ++wakeUps;
+      }
+      scheduleWakeUp(wakeUp, delay);
+    }
+
+    private void scheduleWakeUp(int wakeUp, long delay) {
+      Timer.get().schedule(() -> {
+        synchronized (LANES) {
+          if (!waiting || wakeUps != wakeUp) {
+            return;
+          }
+          waiting = false;
+        }
+        schedule(this);
+      }, delay, TimeUnit.MILLISECONDS);
+    }
+  }
+}
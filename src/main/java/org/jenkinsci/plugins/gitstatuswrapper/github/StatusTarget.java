@@ -0,0 +1,197 @@
+/*
+MIT License
+
+Copyright (c) 2019 Zachary Sherwin
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitstatuswrapper.github;
+
+import hudson.model.Item;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Objects;
+import jenkins.model.Jenkins;
+import org.jenkinsci.plugins.gitstatuswrapper.jenkins.JenkinsHelpers;
+import org.kohsuke.github.GHRepository;
+import org.kohsuke.github.GitHub;
+
+/**
+ * The commit status a wrapper notifies: where it lives on GitHub, how to authenticate and under
+ * which context.
+ *
+ * Targets are saved with the step execution, they only hold what is needed to look the
+ * repository up again lazily.
+ *
+ * Two targets are equal when they point to the same api, repository, sha and context, which is
+ * the granularity at which status updates must stay ordered.
+ */
+public final class StatusTarget implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private final String credentialsId;
+  private final String gitApiUrl;
+  private final String account;
+  private final String repo;
+  private final String sha;
+  private final String gitHubContext;
+  private final boolean verifyCommit;
+  /**
+   * Full name of the job notifying, used as context to look up the credentials
+   */
+  private final String itemFullName;
+
+  /**
+   * Looked up again through {@link GitHubClientCache} once the target is read back, as when a
+   * pipeline resumes after a restart
+   */
+  private transient volatile GHRepository repository;
+  /**
+   * Kept with the target so a resumed wrapper does not verify the commit again
+   */
+  private volatile String resolvedSha;
+
+  public StatusTarget(String credentialsId, String gitApiUrl, String account, String repo,
+      String sha, String gitHubContext, boolean verifyCommit, String itemFullName) {
+    this.credentialsId = credentialsId;
+    this.gitApiUrl = gitApiUrl;
+    this.account = account;
+    this.repo = repo;
+    this.sha = sha;
+    this.gitHubContext = gitHubContext;
+    this.verifyCommit = verifyCommit;
+    this.itemFullName = itemFullName;
+  }
+
+  public String getCredentialsId() {
+    return credentialsId;
+  }
+
+  public String getGitApiUrl() {
+    return gitApiUrl;
+  }
+
+  public String getAccount() {
+    return account;
+  }
+
+  public String getRepo() {
+    return repo;
+  }
+
+  public String getSha() {
+    return sha;
+  }
+
+  public String getGitHubContext() {
+    return gitHubContext;
+  }
+
+  public boolean isVerifyCommit() {
+    return verifyCommit;
+  }
+
+  public String getItemFullName() {
+    return itemFullName;
+  }
+
+  /**
+   * @return the notifying job, looked up as SYSTEM as this may run outside of the build thread
+   */
+  public Item getItem() {
+    if (itemFullName == null) {
+      return null;
+    }
+    try (ACLContext ignored = ACL.as(ACL.SYSTEM)) {
+      return Jenkins.getInstance().getItemByFullName(itemFullName);
+    }
+  }
+
+  /**
+   * @return the repository handle, resolved once per target instance, and again for GitHub App
+   * credentials once the installation token it was looked up with was replaced
+   */
+  GHRepository repository() throws IOException {
+    GHRepository current = repository;
+    if (current != null && GitHubHelper.isAppCredentials(credentialsId, getItem())
+        && GitHubClientCache.clientOf(current) != github()) {
+      // The handle calls GitHub with the token of its client, which expires within the hour
+      current = null;
+    }
+    if (current == null) {
+      current = GitHubHelper.getRepoIfValid(credentialsId, gitApiUrl,
+          JenkinsHelpers.getProxy(gitApiUrl),
+          account, repo, getItem());
+      repository = current;
+    }
+    return current;
+  }
+
+  /**
+   * @return the client of the credentials as of now, shared through {@link GitHubClientCache};
+   * for GitHub App credentials a new one comes with each installation token
+   */
+  GitHub github() throws IOException {
+    if (GitHubHelper.FAST_REPO_LOOKUP) {
+      return GitHubHelper.getGitHub(credentialsId, gitApiUrl, JenkinsHelpers.getProxy(gitApiUrl),
+          account, getItem());
+    }
+    return GitHubHelper.getGitHubIfValid(credentialsId, gitApiUrl,
+        JenkinsHelpers.getProxy(gitApiUrl), account, getItem(), true);
+  }
+
+  /**
+   * @return the full sha1 to notify, resolved once per target
+   */
+  String resolvedSha() throws IOException {
+    if (resolvedSha == null) {
+      resolvedSha = GitHubHelper.resolveCommitSha(repository(), sha, verifyCommit);
+    }
+    return resolvedSha;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof StatusTarget)) {
+      return false;
+    }
+    StatusTarget that = (StatusTarget) o;
+    return Objects.equals(gitApiUrl, that.gitApiUrl)
+        && Objects.equals(account, that.account)
+        && Objects.equals(repo, that.repo)
+        && Objects.equals(sha, that.sha)
+        && Objects.equals(gitHubContext, that.gitHubContext);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(gitApiUrl, account, repo, sha, gitHubContext);
+  }
+
+  @Override
+  public String toString() {
+    return account + "/" + repo + "@" + sha + " [" + gitHubContext + "]";
+  }
+}
@@ -0,0 +1,90 @@
+/*
+MIT License
+
+Copyright (c) 2019 Zachary Sherwin
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitstatuswrapper.github;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import org.kohsuke.github.GHCommitState;
+
+/**
+ * A single status to post on a {@link StatusTarget}
+ */
+public final class StatusUpdate {
+
+  private final StatusTarget target;
+  private final GHCommitState state;
+  private final String targetUrl;
+  private final String description;
+  private final String runId;
+
+  public StatusUpdate(@Nonnull StatusTarget target, @Nonnull GHCommitState state,
+      String targetUrl, String description) {
+    this(target, state, targetUrl, description, null);
+  }
+
+  /**
+   * @param runId {@link hudson.model.Run#getExternalizableId()} of the build reporting the status
+   */
+  public StatusUpdate(@Nonnull StatusTarget target, @Nonnull GHCommitState state,
+      String targetUrl, String description, @CheckForNull String runId) {
+    this.target = target;
+    this.state = state;
+    this.targetUrl = targetUrl;
+    this.description = description;
+    this.runId = runId;
+  }
+
+  public StatusTarget getTarget() {
+    return target;
+  }
+
+  public GHCommitState getState() {
+    return state;
+  }
+
+  public String getTargetUrl() {
+    return targetUrl;
+  }
+
+  public String getDescription() {
+    return description;
+  }
+
+  @CheckForNull
+  public String getRunId() {
+    return runId;
+  }
+
+  /**
+   * @return whether this is the final status of its target, anything but PENDING
+   */
+  public boolean isTerminal() {
+    return state != GHCommitState.PENDING;
+  }
+
+  @Override
+  public String toString() {
+    return state + " on " + target;
+  }
+}
@@ -0,0 +1,120 @@
+/*
+MIT License
+
+Copyright (c) 2019 Zachary Sherwin
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitstatuswrapper.jenkins;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import hudson.util.FormValidation;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import javax.annotation.Nonnull;
+import org.jenkinsci.plugins.gitstatuswrapper.Messages;
+
+/**
+ * Success and failure descriptions wrapped in '/' are regular expressions evaluated on the build
+ * log. Their compiled patterns are shared by every job of the controller through a bounded cache,
+ * only filled by the builds.
+ */
+public final class DescriptionPatterns {
+
+  private static final int MAX_SIZE = Integer
+      .getInteger(DescriptionPatterns.class.getName() + ".maxSize", 500);
+
+  /**
+   * Variables resolved from the environment before a freestyle description is used
+   */
+  private static final Pattern VARIABLE = Pattern.compile("\\$\\{[^}]*\\}");
+
+  private static final Cache<String, Pattern> PATTERNS = CacheBuilder.newBuilder()
+      .maximumSize(MAX_SIZE)
+      .build();
+
+  private DescriptionPatterns() {
+  }
+
+  /**
+   * @return whether the description is a regex pattern, ex: /(.*)/
+   */
+  public static boolean isRegex(String description) {
+    return description != null && description.length() > 1 && description.startsWith("/")
+        && description.endsWith("/");
+  }
+
+  /**
+   * @return the regex of a description wrapped in '/'
+   */
+  public static String regexOf(@Nonnull String description) {
+    return description.substring(1, description.length() - 1);
+  }
+
+  /**
+   * Get the compiled pattern of a description regex, compiling it only the first time
+   *
+   * @throws PatternSyntaxException if the regex is invalid
+   */
+  public static Pattern compile(@Nonnull String regex) {
+    Pattern pattern = PATTERNS.getIfPresent(regex);
+    if (pattern == null) {
+      pattern = Pattern.compile(regex, Pattern.MULTILINE);
+      PATTERNS.put(regex, pattern);
+    }
+    return pattern;
+  }
+
+  /**
+   * Fail fast on a description that is an invalid regex
+   *
+   * @throws IllegalArgumentException if the description is an invalid regex
+   */
+  public static void validate(String description) {
+    if (isRegex(description)) {
+      try {
+        compile(regexOf(description));
+      } catch (PatternSyntaxException e) {
+        throw new IllegalArgumentException(
+            String.format(Messages.GitStatusWrapper_INVALID_DESCRIPTION_REGEX(), e.getMessage()),
+            e);
+      }
+    }
+  }
+
+  /**
+   * Form validation for the success and failure description fields
+   *
+   * Variables like ${BUILD_TAG} are only known once the build runs, they are checked as plain text.
+   */
+  public static FormValidation check(String description) {
+    if (!isRegex(description)) {
+      return FormValidation.ok();
+    }
+    try {
+      // Compiled outside of the cache, the field is checked on every keystroke
+      Pattern.compile(regexOf(VARIABLE.matcher(description).replaceAll("x")), Pattern.MULTILINE);
+      return FormValidation.ok();
+    } catch (PatternSyntaxException e) {
+      return FormValidation.error(
+          String.format(Messages.GitStatusWrapper_INVALID_DESCRIPTION_REGEX(), e.getMessage()));
+    }
+  }
+}
@@ -23,22 +23,17 @@ SOFTWARE.
  */
 package org.jenkinsci.plugins.gitstatuswrapper.jenkins;
 
-import com.cloudbees.plugins.credentials.CredentialsProvider;
-import com.cloudbees.plugins.credentials.common.AbstractIdCredentialsListBoxModel;
-import com.cloudbees.plugins.credentials.common.IdCredentials;
-import com.cloudbees.plugins.credentials.common.StandardListBoxModel;
-import com.cloudbees.plugins.credentials.common.UsernamePasswordCredentials;
 import hudson.console.ConsoleNote;
 import hudson.model.AbstractBuild;
 import hudson.model.Item;
 import hudson.model.Job;
 import hudson.model.Run;
-import hudson.security.ACL;
 import hudson.util.ListBoxModel;
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.util.List;
 import jenkins.model.Jenkins;
+import org.jenkinsci.plugins.gitstatuswrapper.credentials.CredentialsHelper;
+import org.jenkinsci.plugins.gitstatuswrapper.github.GitHubHelper;
 
 import javax.annotation.Nonnull;
 import java.net.Proxy;
@@ -66,15 +61,33 @@ public class JenkinsHelpers {
     }
   }
 
+  /**
+   * @deprecated only lists the credentials for api.github.com, use
+   * {@link #fillCredentialsIdItems(Item, String, String)}
+   */
+  @Deprecated
   public static ListBoxModel fillCredentialsIdItems(Item project) {
+    return fillCredentialsIdItems(project, null, null);
+  }
+
+  /**
+   * List the credentials of the project that can authenticate against the GitHub api url
+   *
+   * @param gitApiUrl api url the credentials are for, api.github.com if empty, any if it holds a
+   * variable
+   * @param credentialsId current value, kept in the list even if it does not match the url
+   */
+  public static ListBoxModel fillCredentialsIdItems(Item project, String gitApiUrl,
+      String credentialsId) {
     Jenkins.getInstance().checkPermission(Job.CONFIGURE);
-    AbstractIdCredentialsListBoxModel result = new StandardListBoxModel();
-    List<UsernamePasswordCredentials> credentialsList = CredentialsProvider
-        .lookupCredentials(UsernamePasswordCredentials.class, project, ACL.SYSTEM);
-    for (UsernamePasswordCredentials credential : credentialsList) {
-      result = result.with((IdCredentials) credential);
+    if (gitApiUrl == null || gitApiUrl.trim().isEmpty()) {
+      gitApiUrl = GitHubHelper.DEFAULT_GITHUB_API_URL;
+    } else if (gitApiUrl.contains("$")) {
+      // A variable resolved when the build runs, any credentials may do
+      gitApiUrl = null;
     }
-    return result;
+    return CredentialsHelper.listCredentials(project,
+        gitApiUrl == null ? null : gitApiUrl.trim(), credentialsId);
   }
 
   /***
@@ -82,7 +95,9 @@ public class JenkinsHelpers {
    * @param run jenkins run class
    * @return String of the entire build log
    * @throws IOException
+   * @deprecated loads the entire log in memory, use {@link LogPatternMatcher} to search the log
    */
+  @Deprecated
   public static String getBuildLogOutput(Run<?, ?> run) throws IOException {
     try (BufferedReader reader = new BufferedReader(run.getLogReader())) {
       StringBuilder line = new StringBuilder();
@@ -0,0 +1,273 @@
+/*
+MIT License
+
+Copyright (c) 2019 Zachary Sherwin
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitstatuswrapper.jenkins;
+
+import hudson.model.Run;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+/**
+ * Finds description patterns in build logs without loading the whole log in memory.
+ *
+ * The log is scanned line by line with a {@link PlainLogReader}, which strips console notes without
+ * allocating per line, and the scan stops at the first match. Patterns that may match
+ * across lines are evaluated on a window of consecutive lines instead, the window slides by half
+ * its size so a match spanning up to half of it is always found.
+ *
+ * The scan can be limited to the tail of the log, read from an offset of the log file, so its cost
+ * depends on the tail size and not on the log size. The last match is searched by reading the log
+ * file backwards, see {@link ReverseLogReader}.
+ */
+public final class LogPatternMatcher {
+
+  /**
+   * Lines in the window used for patterns that may span lines
+   */
+  public static final int WINDOW_LINES = Math.max(2, Integer
+      .getInteger(LogPatternMatcher.class.getName() + ".windowLines", 64));
+
+  /**
+   * Constructs that can match a line terminator: raw terminators, their escapes, classes containing
+   * them, grapheme clusters, negated sets and the DOTALL flag
+   */
+  private static final Pattern SPANS_LINES = Pattern.compile("[\\n\\r]|\\\\[nrRsvWDHX]"
+      + "|\\\\x0[aAdD]|\\\\x\\{0*[aAdD]\\}|\\\\u000[aAdD]|\\\\0+1[25]|\\\\c[JMjm]"
+      + "|\\[\\^|\\(\\?[a-zA-Z]*s");
+  /**
+   * Unicode and POSIX classes, checked one by one against line terminators
+   */
+  private static final Pattern PROPERTY_CLASS = Pattern
+      .compile("\\\\[pP](?:\\{[^}]*\\}|[A-Za-z])");
+
+  private LogPatternMatcher() {
+  }
+
+  /**
+   * Find the pattern in the build log of a run
+   *
+   * @return the first group of the first match, or the whole match if the pattern has no group.
+   * null if nothing matched.
+   */
+  @CheckForNull
+  public static String find(@Nonnull Run<?, ?> run, @Nonnull Pattern pattern)
+      throws IOException {
+    return find(run, pattern, 0, false);
+  }
+
+  /**
+   * Find the pattern in the build log of a run, optionally only in its last bytes
+   *
+   * @param tailBytes only scan this many bytes from the end of the log, 0 scans the whole log. The
+   * partial line at the start of the tail is skipped.
+   * @param lastMatch return the last match of the scanned range instead of the first one. The log
+   * is then read backwards from its end and the scan stops at the last match.
+   * @return the first group of the match, or the whole match if the pattern has no group. null if
+   * nothing matched.
+   */
+  @CheckForNull
+  public static String find(@Nonnull Run<?, ?> run, @Nonnull Pattern pattern, long tailBytes,
+      boolean lastMatch) throws IOException {
+    File logFile = run.getLogFile();
+    // Compressed logs can not be read from an offset
+    if ((tailBytes > 0 || lastMatch) && logFile.isFile()
+        && !logFile.getName().endsWith(".gz")) {
+      try (RandomAccessFile raf = new RandomAccessFile(logFile, "r")) {
+        long start = tailBytes > 0 ? Math.max(0, raf.length() - tailBytes) : 0;
+        if (lastMatch) {
+          return findLast(new ReverseLogReader(raf, start, run.getCharset()), pattern);
+        }
+        raf.seek(start);
+        PlainLogReader tail = new PlainLogReader(Channels.newInputStream(raf.getChannel()),
+            run.getCharset());
+        if (start > 0) {
+          tail.readLine();
+        }
+        return find(tail, pattern, false);
+      }
+    }
+    try (PlainLogReader log = new PlainLogReader(run.getLogInputStream(), run.getCharset())) {
+      return find(log, pattern, lastMatch);
+    }
+  }
+
+  /**
+   * Find the first match of the pattern in a raw log, console notes are removed before matching
+   *
+   * @see #find(Run, Pattern)
+   */
+  @CheckForNull
+  public static String find(@Nonnull InputStream log, @Nonnull Charset charset,
+      @Nonnull Pattern pattern) throws IOException {
+    return find(new PlainLogReader(log, charset), pattern, false);
+  }
+
+  /**
+   * Find the pattern in a log
+   *
+   * @param lastMatch keep scanning to the end of the log and return the last match
+   * @see #find(Run, Pattern, long, boolean)
+   */
+  @CheckForNull
+  public static String find(@Nonnull PlainLogReader reader, @Nonnull Pattern pattern,
+      boolean lastMatch) throws IOException {
+    Matcher matcher = pattern.matcher("");
+    String found = null;
+    if (!spansLines(pattern)) {
+      CharSequence line;
+      while ((line = reader.readLine()) != null) {
+        matcher.reset(line);
+        while (matcher.find()) {
+          found = result(matcher);
+          if (!lastMatch) {
+            return found;
+          }
+        }
+      }
+      return found;
+    }
+
+    Deque<String> window = new ArrayDeque<>(WINDOW_LINES);
+    CharSequence line;
+    while ((line = reader.readLine()) != null) {
+      window.addLast(line.toString());
+      if (window.size() == WINDOW_LINES) {
+        matcher.reset(join(window));
+        while (matcher.find()) {
+          found = result(matcher);
+          if (!lastMatch) {
+            return found;
+          }
+        }
+        for (int i = 0; i < WINDOW_LINES / 2; i++) {
+          window.removeFirst();
+        }
+      }
+    }
+    if (!window.isEmpty()) {
+      matcher.reset(join(window));
+      while (matcher.find()) {
+        found = result(matcher);
+        if (!lastMatch) {
+          return found;
+        }
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Find the last match of the pattern, reading the log from its end
+   */
+  @CheckForNull
+  static String findLast(@Nonnull ReverseLogReader reader, @Nonnull Pattern pattern)
+      throws IOException {
+    Matcher matcher = pattern.matcher("");
+    if (!spansLines(pattern)) {
+      CharSequence line;
+      while ((line = reader.readLine()) != null) {
+        String found = last(matcher.reset(line));
+        if (found != null) {
+          return found;
+        }
+      }
+      return null;
+    }
+
+    Deque<String> window = new ArrayDeque<>(WINDOW_LINES);
+    CharSequence line;
+    while ((line = reader.readLine()) != null) {
+      window.addFirst(line.toString());
+      if (window.size() == WINDOW_LINES) {
+        String found = last(matcher.reset(join(window)));
+        if (found != null) {
+          return found;
+        }
+        for (int i = 0; i < WINDOW_LINES / 2; i++) {
+          window.removeLast();
+        }
+      }
+    }
+    return window.isEmpty() ? null : last(matcher.reset(join(window)));
+  }
+
+  private static String last(Matcher matcher) {
+    String found = null;
+    while (matcher.find()) {
+      found = result(matcher);
+    }
+    return found;
+  }
+
+  /**
+   * @return whether the pattern may match a line terminator
+   */
+  public static boolean spansLines(Pattern pattern) {
+    if ((pattern.flags() & Pattern.DOTALL) != 0
+        || SPANS_LINES.matcher(pattern.pattern()).find()) {
+      return true;
+    }
+    Matcher classes = PROPERTY_CLASS.matcher(pattern.pattern());
+    while (classes.find()) {
+      if (matchesTerminator(classes.group(), pattern.flags())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean matchesTerminator(String propertyClass, int flags) {
+    try {
+      Pattern property = Pattern.compile(propertyClass, flags);
+      return property.matcher("\n").matches() || property.matcher("\r").matches();
+    } catch (PatternSyntaxException e) {
+      return true;
+    }
+  }
+
+  private static String join(Deque<String> lines) {
+    StringBuilder joined = new StringBuilder();
+    for (String line : lines) {
+      if (joined.length() > 0) {
+        joined.append('\n');
+      }
+      joined.append(line);
+    }
+    return joined.toString();
+  }
+
+  private static String result(Matcher matcher) {
+    return matcher.groupCount() >= 1 ? matcher.group(1) : matcher.group();
+  }
+}
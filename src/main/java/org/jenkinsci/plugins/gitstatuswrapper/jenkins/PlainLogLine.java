@@ -0,0 +1,150 @@
+/*
+MIT License
+
+Copyright (c) 2019 Zachary Sherwin
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitstatuswrapper.jenkins;
+
+import hudson.console.ConsoleNote;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import javax.annotation.Nonnull;
+
+/**
+ * Turns raw log line bytes into plain text: line terminators and console notes are stripped at
+ * byte level and the result is decoded into a reused buffer.
+ *
+ * No object is allocated per line once the buffers are large enough, the returned
+ * {@link CharSequence} is only valid until the next call. Not thread safe.
+ */
+public final class PlainLogLine {
+
+  private static final byte[] PREAMBLE = ConsoleNote.PREAMBLE;
+  private static final byte[] POSTAMBLE = ConsoleNote.POSTAMBLE;
+
+  private final CharsetDecoder decoder;
+  private byte[] bytes = new byte[256];
+  private ByteBuffer in = ByteBuffer.wrap(bytes);
+  private CharBuffer chars = CharBuffer.allocate(256);
+
+  public PlainLogLine(@Nonnull Charset charset) {
+    this.decoder = charset.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+  }
+
+  /**
+   * @param b raw bytes of a log line, with or without its terminator
+   * @return the text of the line without terminator and console notes
+   */
+  public CharSequence decode(byte[] b, int off, int len) {
+    if (bytes.length < len) {
+      bytes = new byte[Math.max(len, bytes.length * 2)];
+      in = ByteBuffer.wrap(bytes);
+    }
+    int n = strip(b, off, len, bytes);
+
+    chars.clear();
+    if (isAscii(bytes, n)) {
+      ensureChars(n);
+      for (int i = 0; i < n; i++) {
+        chars.put((char) bytes[i]);
+      }
+    } else {
+      ensureChars((int) Math.ceil(n * (double) decoder.maxCharsPerByte()) + 1);
+      in.clear();
+      in.limit(n);
+      decoder.reset();
+      decoder.decode(in, chars, true);
+      decoder.flush(chars);
+    }
+    chars.flip();
+    return chars;
+  }
+
+  private void ensureChars(int capacity) {
+    if (chars.capacity() < capacity) {
+      chars = CharBuffer.allocate(Math.max(capacity, chars.capacity() * 2));
+    }
+  }
+
+  private static boolean isAscii(byte[] b, int len) {
+    for (int i = 0; i < len; i++) {
+      if (b[i] < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Copy a line without its terminator and console notes (JENKINS-7402), same as
+   * {@link ConsoleNote#removeNotes(String)} does on strings
+   *
+   * @return the number of bytes copied to dst
+   */
+  static int strip(byte[] src, int off, int len, byte[] dst) {
+    int end = off + len;
+    while (end > off && (src[end - 1] == '\n' || src[end - 1] == '\r')) {
+      end--;
+    }
+    int n = 0;
+    int i = off;
+    while (i < end) {
+      if (src[i] == PREAMBLE[0] && startsWith(src, i, end, PREAMBLE)) {
+        int close = indexOf(src, i + PREAMBLE.length, end, POSTAMBLE);
+        if (close < 0) {
+          // Unterminated note, kept as is
+          System.arraycopy(src, i, dst, n, end - i);
+          return n + end - i;
+        }
+        i = close + POSTAMBLE.length;
+      } else {
+        dst[n++] = src[i++];
+      }
+    }
+    return n;
+  }
+
+  private static boolean startsWith(byte[] b, int from, int end, byte[] prefix) {
+    if (end - from < prefix.length) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length; i++) {
+      if (b[from + i] != prefix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int indexOf(byte[] b, int from, int end, byte[] target) {
+    for (int i = from; i <= end - target.length; i++) {
+      if (startsWith(b, i, end, target)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+}
@@ -0,0 +1,117 @@
+/*
+MIT License
+
+Copyright (c) 2019 Zachary Sherwin
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitstatuswrapper.jenkins;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+/**
+ * Reads a raw build log line by line as plain text, see {@link PlainLogLine}.
+ *
+ * Bytes are read through a fixed buffer and lines are only copied when they cross its boundary, so
+ * reading a log allocates next to nothing whatever its size. Lines longer than
+ * {@link #MAX_LINE_BYTES} are cut, only their start is returned. Not thread safe.
+ */
+public final class PlainLogReader implements Closeable {
+
+  private static final int BUFFER_SIZE = 8192;
+
+  /**
+   * Bytes kept of a single line, the rest of a longer line is skipped
+   */
+  public static final int MAX_LINE_BYTES = Math.max(BUFFER_SIZE, Integer
+      .getInteger(PlainLogReader.class.getName() + ".maxLineKb", 1024) * 1024);
+
+  private final InputStream in;
+  private final PlainLogLine plain;
+  private final byte[] buffer = new byte[BUFFER_SIZE];
+  private int pos;
+  private int limit;
+
+  /**
+   * Start of a line crossing the buffer boundary
+   */
+  private byte[] pending = new byte[256];
+  private int pendingLength;
+
+  public PlainLogReader(@Nonnull InputStream in, @Nonnull Charset charset) {
+    this.in = in;
+    this.plain = new PlainLogLine(charset);
+  }
+
+  /**
+   * @return the next line without terminator and console notes, only valid until the next call.
+   * null at the end of the log.
+   */
+  @CheckForNull
+  public CharSequence readLine() throws IOException {
+    pendingLength = 0;
+    while (true) {
+      if (pos == limit) {
+        limit = in.read(buffer);
+        pos = 0;
+        if (limit <= 0) {
+          limit = 0;
+          return pendingLength > 0 ? plain.decode(pending, 0, pendingLength) : null;
+        }
+      }
+      int start = pos;
+      while (pos < limit && buffer[pos] != '\n') {
+        pos++;
+      }
+      if (pos < limit) {
+        pos++;
+        if (pendingLength == 0) {
+          return plain.decode(buffer, start, pos - start);
+        }
+        append(start, pos - start);
+        return plain.decode(pending, 0, pendingLength);
+      }
+      append(start, pos - start);
+    }
+  }
+
+  private void append(int start, int length) {
+    length = Math.min(length, MAX_LINE_BYTES - pendingLength);
+    if (length <= 0) {
+      return;
+    }
+    if (pending.length < pendingLength + length) {
+      byte[] grown = new byte[Math.max(pendingLength + length, pending.length * 2)];
+      System.arraycopy(pending, 0, grown, 0, pendingLength);
+      pending = grown;
+    }
+    System.arraycopy(buffer, start, pending, pendingLength, length);
+    pendingLength += length;
+  }
+
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+}
@@ -0,0 +1,118 @@
+/*
+MIT License
+
+Copyright (c) 2019 Zachary Sherwin
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitstatuswrapper.jenkins;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+/**
+ * Reads a raw build log file line by line from its end, see {@link PlainLogLine}.
+ *
+ * The file is read backwards through a fixed buffer, so finding something near the end of a log
+ * costs the same whatever the log size. Lines longer than {@link PlainLogReader#MAX_LINE_BYTES}
+ * are cut the same way as {@link PlainLogReader} does. Not thread safe, the file is not closed.
+ */
+final class ReverseLogReader {
+
+  private static final int BUFFER_SIZE = 8192;
+
+  private final RandomAccessFile file;
+  private final long floor;
+  private final PlainLogLine plain;
+  private final byte[] buffer = new byte[BUFFER_SIZE];
+  /**
+   * File offset of the first buffered byte
+   */
+  private long bufferStart;
+  private int bufferLength;
+  /**
+   * File offset right after the next line to return, its terminator included
+   */
+  private long lineEnd;
+  private byte[] line = new byte[256];
+
+  /**
+   * @param floor offset to stop at. When it is not the start of the file, the partial line
+   * starting at it is skipped.
+   */
+  ReverseLogReader(@Nonnull RandomAccessFile file, long floor, @Nonnull Charset charset)
+      throws IOException {
+    this.file = file;
+    this.floor = floor;
+    this.plain = new PlainLogLine(charset);
+    this.lineEnd = file.length();
+    this.bufferStart = lineEnd;
+  }
+
+  /**
+   * @return the previous line without terminator and console notes, only valid until the next
+   * call. null once the floor is reached.
+   */
+  @CheckForNull
+  CharSequence readLine() throws IOException {
+    if (lineEnd <= floor) {
+      return null;
+    }
+    long pos = lineEnd - 1;
+    if (byteAt(pos) == '\n') {
+      pos--;
+    }
+    while (pos >= floor && byteAt(pos) != '\n') {
+      pos--;
+    }
+    long start = pos + 1;
+    long end = lineEnd;
+    lineEnd = start;
+    if (start == floor && floor > 0) {
+      return null;
+    }
+    return decode(start, (int) Math.min(end - start, PlainLogReader.MAX_LINE_BYTES));
+  }
+
+  private byte byteAt(long pos) throws IOException {
+    if (pos < bufferStart || pos >= bufferStart + bufferLength) {
+      bufferStart = Math.max(floor, pos + 1 - BUFFER_SIZE);
+      bufferLength = (int) (pos + 1 - bufferStart);
+      file.seek(bufferStart);
+      file.readFully(buffer, 0, bufferLength);
+    }
+    return buffer[(int) (pos - bufferStart)];
+  }
+
+  private CharSequence decode(long start, int length) throws IOException {
+    if (start >= bufferStart && start + length <= bufferStart + bufferLength) {
+      return plain.decode(buffer, (int) (start - bufferStart), length);
+    }
+    // Crosses the buffer boundary
+    if (line.length < length) {
+      line = new byte[Math.max(length, line.length * 2)];
+    }
+    file.seek(start);
+    file.readFully(line, 0, length);
+    return plain.decode(line, 0, length);
+  }
+}
@@ -0,0 +1,209 @@
+/*
+MIT License
+
+Copyright (c) 2019 Zachary Sherwin
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitstatuswrapper.pipeline;
+
+import hudson.console.ConsoleLogFilter;
+import hudson.console.LineTransformationOutputStream;
+import hudson.model.AbstractBuild;
+import hudson.model.Run;
+import hudson.remoting.Asynchronous;
+import hudson.remoting.Channel;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.annotation.CheckForNull;
+import org.jenkinsci.plugins.gitstatuswrapper.jenkins.DescriptionPatterns;
+import org.jenkinsci.plugins.gitstatuswrapper.jenkins.LogPatternMatcher;
+import org.jenkinsci.plugins.gitstatuswrapper.jenkins.PlainLogLine;
+
+/**
+ * Matches the success and failure description regexes on the output of the wrapped block while it
+ * is written, so the terminal status does not need to read the build log again.
+ *
+ * Only the latest relevant match of each pattern is retained. Patterns that may span lines can
+ * not be matched line by line and are left to a scan of the log at completion.
+ *
+ * When output is filtered on an agent, the filter is sent there as a copy that reports its matches
+ * back to the controller through the remoting channel.
+ */
+final class DescriptionLogFilter extends ConsoleLogFilter implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final Logger LOGGER = Logger.getLogger(DescriptionLogFilter.class.getName());
+
+  private final Pattern successPattern;
+  private final Pattern failurePattern;
+  private final boolean lastMatch;
+
+  /**
+   * The filter on the controller, only set on copies sent to an agent
+   */
+  private final MatchListener controller;
+
+  private volatile String successMatch;
+  private volatile String failureMatch;
+
+  DescriptionLogFilter(String successDescription, String failureDescription,
+      boolean lastMatch) {
+    this.successPattern = watchable(successDescription);
+    this.failurePattern = watchable(failureDescription);
+    this.lastMatch = lastMatch;
+    this.controller = null;
+  }
+
+  private DescriptionLogFilter(DescriptionLogFilter filter, MatchListener controller) {
+    this.successPattern = filter.successPattern;
+    this.failurePattern = filter.failurePattern;
+    this.lastMatch = filter.lastMatch;
+    this.controller = controller;
+  }
+
+  /**
+   * Receives the matches of a copy of the filter running on an agent
+   */
+  public interface MatchListener {
+
+    @Asynchronous
+    void matched(boolean success, String match);
+  }
+
+  /**
+   * Sent over a remoting channel, the filter is replaced by a copy calling back this instance
+   */
+  private Object writeReplace() {
+    Channel channel = Channel.current();
+    if (channel == null || controller != null) {
+      return this;
+    }
+    return new DescriptionLogFilter(this, channel.export(MatchListener.class, this::matched));
+  }
+
+  private void matched(boolean success, String match) {
+    if (success) {
+      if (lastMatch || successMatch == null) {
+        successMatch = match;
+      }
+    } else if (lastMatch || failureMatch == null) {
+      failureMatch = match;
+    }
+  }
+
+  private void report(boolean success, String match) {
+    matched(success, match);
+    if (controller != null) {
+      try {
+        controller.matched(success, match);
+      } catch (RuntimeException e) {
+        LOGGER.log(Level.FINE, "Unable to report a description match to the controller", e);
+      }
+    }
+  }
+
+  private static Pattern watchable(String description) {
+    if (!DescriptionPatterns.isRegex(description)) {
+      return null;
+    }
+    Pattern pattern = DescriptionPatterns.compile(DescriptionPatterns.regexOf(description));
+    return LogPatternMatcher.spansLines(pattern) ? null : pattern;
+  }
+
+  /**
+   * @return whether the given description regex is matched by this filter
+   */
+  boolean watches(boolean success) {
+    return (success ? successPattern : failurePattern) != null;
+  }
+
+  /**
+   * @return the retained match for the success or failure description, null if none
+   */
+  @CheckForNull
+  String getMatch(boolean success) {
+    return success ? successMatch : failureMatch;
+  }
+
+  @Override
+  public OutputStream decorateLogger(AbstractBuild build, OutputStream logger)
+      throws IOException, InterruptedException {
+    return decorateLogger((Run) build, logger);
+  }
+
+  @Override
+  public OutputStream decorateLogger(Run build, OutputStream logger)
+      throws IOException, InterruptedException {
+    if (successPattern == null && failurePattern == null) {
+      return logger;
+    }
+    final PlainLogLine plain = new PlainLogLine(
+        build != null ? build.getCharset() : Charset.defaultCharset());
+    return new LineTransformationOutputStream() {
+      @Override
+      protected synchronized void eol(byte[] b, int len) throws IOException {
+        logger.write(b, 0, len);
+        CharSequence line = plain.decode(b, 0, len);
+        if (successPattern != null && (lastMatch || successMatch == null)) {
+          String match = find(successPattern, line);
+          if (match != null) {
+            report(true, match);
+          }
+        }
+        if (failurePattern != null && (lastMatch || failureMatch == null)) {
+          String match = find(failurePattern, line);
+          if (match != null) {
+            report(false, match);
+          }
+        }
+      }
+
+      @Override
+      public void flush() throws IOException {
+        logger.flush();
+      }
+
+      @Override
+      public void close() throws IOException {
+        super.close();
+        logger.close();
+      }
+    };
+  }
+
+  private String find(Pattern pattern, CharSequence line) {
+    Matcher matcher = pattern.matcher(line);
+    String found = null;
+    while (matcher.find()) {
+      found = matcher.groupCount() >= 1 ? matcher.group(1) : matcher.group();
+      if (!lastMatch) {
+        break;
+      }
+    }
+    return found;
+  }
+}
@@ -26,6 +26,7 @@ package org.jenkinsci.plugins.gitstatuswrapper.pipeline;
 import hudson.EnvVars;
 import hudson.Extension;
 import hudson.FilePath;
+import hudson.console.ConsoleLogFilter;
 import hudson.model.Item;
 import hudson.model.Run;
 import hudson.model.TaskListener;
@@ -36,11 +37,14 @@ import org.apache.commons.lang.StringUtils;
 import org.jenkinsci.plugins.displayurlapi.DisplayURLProvider;
 import org.jenkinsci.plugins.gitstatuswrapper.Messages;
 import org.jenkinsci.plugins.gitstatuswrapper.github.GitHubHelper;
+import org.jenkinsci.plugins.gitstatuswrapper.github.StatusPublisher;
+import org.jenkinsci.plugins.gitstatuswrapper.github.StatusTarget;
+import org.jenkinsci.plugins.gitstatuswrapper.github.StatusUpdate;
+import org.jenkinsci.plugins.gitstatuswrapper.jenkins.DescriptionPatterns;
 import org.jenkinsci.plugins.gitstatuswrapper.jenkins.JenkinsHelpers;
+import org.jenkinsci.plugins.gitstatuswrapper.jenkins.LogPatternMatcher;
 import org.jenkinsci.plugins.workflow.steps.*;
-import org.kohsuke.github.GHCommit;
 import org.kohsuke.github.GHCommitState;
-import org.kohsuke.github.GHRepository;
 import org.kohsuke.stapler.AncestorInPath;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.DataBoundSetter;
@@ -50,14 +54,15 @@ import org.kohsuke.stapler.verb.POST;
 import javax.annotation.Nonnull;
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 
 public final class GitStatusWrapperStep extends Step implements Serializable {
@@ -66,6 +71,10 @@ public final class GitStatusWrapperStep extends Step implements Serializable {
    * A string label to differentiate the send status from the status of other systems.
    */
   private String gitHubContext = "";
+  /**
+   * Several contexts to notify at once for the same wrapped block, replaces gitHubContext when set
+   */
+  private List<String> gitHubContexts = new ArrayList<>();
   /**
    * The optional GitHub enterprise instance api url endpoint.
    *
@@ -118,6 +127,28 @@ public final class GitStatusWrapperStep extends Step implements Serializable {
    * Defaults to description if empty
    */
   private String failureDescription = "";
+  /**
+   * Fetch the commit from GitHub before notifying, instead of trusting a full length sha as is
+   */
+  private boolean verifyCommit = false;
+  /**
+   * Only log a warning when a status can not be set, instead of failing the step
+   */
+  private boolean bestEffort = false;
+  /**
+   * Only search description regexes in this many KB at the end of the build log, 0 searches the
+   * whole log
+   */
+  private int logScanTailKb = 0;
+  /**
+   * Use the last match of description regexes instead of the first one
+   */
+  private boolean logScanReverse = false;
+  /**
+   * Match description regexes on the output of the wrapped block while it runs, instead of
+   * searching the build log once it is done
+   */
+  private boolean watchBodyOutput = false;
 
 
   public String getGitHubContext() {
@@ -132,6 +163,16 @@ public final class GitStatusWrapperStep extends Step implements Serializable {
     this.gitHubContext = gitHubContext;
   }
 
+  public List<String> getGitHubContexts() {
+    return gitHubContexts == null ? Collections.emptyList() : gitHubContexts;
+  }
+
+  @DataBoundSetter
+  public void setGitHubContexts(List<String> gitHubContexts) {
+    this.gitHubContexts = gitHubContexts == null ? new ArrayList<>()
+        : new ArrayList<>(gitHubContexts);
+  }
+
   public String getGitApiUrl() {
     if (StringUtils.isEmpty(gitApiUrl)) {
       this.gitApiUrl = GitHubHelper.DEFAULT_GITHUB_API_URL;
@@ -216,6 +257,51 @@ public final class GitStatusWrapperStep extends Step implements Serializable {
     this.failureDescription = failureDescription;
   }
 
+  public boolean isVerifyCommit() {
+    return verifyCommit;
+  }
+
+  @DataBoundSetter
+  public void setVerifyCommit(boolean verifyCommit) {
+    this.verifyCommit = verifyCommit;
+  }
+
+  public boolean isBestEffort() {
+    return bestEffort;
+  }
+
+  @DataBoundSetter
+  public void setBestEffort(boolean bestEffort) {
+    this.bestEffort = bestEffort;
+  }
+
+  public int getLogScanTailKb() {
+    return logScanTailKb;
+  }
+
+  @DataBoundSetter
+  public void setLogScanTailKb(int logScanTailKb) {
+    this.logScanTailKb = Math.max(0, logScanTailKb);
+  }
+
+  public boolean isLogScanReverse() {
+    return logScanReverse;
+  }
+
+  @DataBoundSetter
+  public void setLogScanReverse(boolean logScanReverse) {
+    this.logScanReverse = logScanReverse;
+  }
+
+  public boolean isWatchBodyOutput() {
+    return watchBodyOutput;
+  }
+
+  @DataBoundSetter
+  public void setWatchBodyOutput(boolean watchBodyOutput) {
+    this.watchBodyOutput = watchBodyOutput;
+  }
+
   @DataBoundConstructor
   public GitStatusWrapperStep() {
   }
@@ -248,8 +334,17 @@ public final class GitStatusWrapperStep extends Step implements Serializable {
       return true;
     }
 
-    public ListBoxModel doFillCredentialsIdItems(@AncestorInPath Item project) {
-      return JenkinsHelpers.fillCredentialsIdItems(project);
+    public ListBoxModel doFillCredentialsIdItems(@AncestorInPath Item project,
+        @QueryParameter String gitApiUrl, @QueryParameter String credentialsId) {
+      return JenkinsHelpers.fillCredentialsIdItems(project, gitApiUrl, credentialsId);
+    }
+
+    public FormValidation doCheckSuccessDescription(@QueryParameter String value) {
+      return DescriptionPatterns.check(value);
+    }
+
+    public FormValidation doCheckFailureDescription(@QueryParameter String value) {
+      return DescriptionPatterns.check(value);
     }
 
     @POST
@@ -270,9 +365,13 @@ public final class GitStatusWrapperStep extends Step implements Serializable {
 
     private final GitStatusWrapperStep step;
     private transient BodyExecution body;
+    /**
+     * The PENDING status of each context, checked once the body is over, null after a restart
+     */
+    private transient List<CompletableFuture<Void>> pending;
 
-    public transient GHRepository _repository;
-    public transient GHCommit _commit;
+    private List<StatusTarget> targets;
+    private DescriptionLogFilter logFilter;
 
     protected ExecutionImpl(@Nonnull StepContext context, GitStatusWrapperStep step) {
       super(context);
@@ -282,36 +381,141 @@ public final class GitStatusWrapperStep extends Step implements Serializable {
 
     @Override
     public boolean start() throws Exception {
+      DescriptionPatterns.validate(this.step.getSuccessDescription());
+      DescriptionPatterns.validate(this.step.getFailureDescription());
       this.step.setSha(this.getSha());
       this.step.setRepo(this.getRepo());
       this.step.setCredentialsId(this.getCredentialsId());
       this.step.setAccount(this.getAccount());
       this.step.setTargetUrl(this.getTargetUrl());
 
-      this.setStatus(GHCommitState.PENDING);
-
-      EnvVars envOverride = new EnvVars();
-      EnvironmentExpander envEx = EnvironmentExpander
-          .merge(getContext().get(EnvironmentExpander.class),
-              new ExpanderImpl(envOverride));
-      body = getContext().newBodyInvoker().withContext(envEx).withCallback(new Callback(this))
-          .start();
+      // Posted in the background, neither the CPS VM thread nor the body wait for GitHub. The
+      // final status of each context is queued behind its PENDING one on the same target, and
+      // a failure to set it is reported once the body is over. The inputs above are resolved
+      // once for every context
+      pending = this.setStatus(GHCommitState.PENDING);
+      startBody();
 
       return false;
     }
 
-    public void setStatus(GHCommitState state)
+    private void startBody() {
+      try {
+        EnvVars envOverride = new EnvVars();
+        EnvironmentExpander envEx = EnvironmentExpander
+            .merge(getContext().get(EnvironmentExpander.class),
+                new ExpanderImpl(envOverride));
+        BodyInvoker invoker = getContext().newBodyInvoker().withContext(envEx);
+        if (this.step.isWatchBodyOutput()) {
+          logFilter = new DescriptionLogFilter(this.step.getSuccessDescription(),
+              this.step.getFailureDescription(), this.step.isLogScanReverse());
+          invoker = invoker.withContext(BodyInvoker
+              .mergeConsoleLogFilters(getContext().get(ConsoleLogFilter.class), logFilter));
+        }
+        body = invoker.withCallback(new Callback(this)).start();
+      } catch (IOException | InterruptedException | RuntimeException e) {
+        abort(e);
+      }
+    }
+
+    /**
+     * Fail the step without a final status
+     */
+    private void abort(Throwable cause) {
+      discardPending();
+      getContext().onFailure(cause);
+    }
+
+    /**
+     * Keep the outbox from delivering the PENDING status again, no final status follows it
+     */
+    private void discardPending() {
+      if (pending != null) {
+        for (CompletableFuture<Void> published : pending) {
+          StatusPublisher.discard(published);
+        }
+      }
+    }
+
+    /**
+     * Wait for the final statuses, the PENDING ones are done by then as they are queued first
+     *
+     * @return completes with the failure to report, null if there is none or they are tolerated
+     */
+    private CompletableFuture<Throwable> settle(GHCommitState state,
+        List<CompletableFuture<Void>> published) {
+      List<CompletableFuture<Void>> started = pending == null
+          ? Collections.emptyList() : pending;
+      CompletableFuture<?>[] all = new CompletableFuture<?>[started.size() + published.size()];
+      for (int i = 0; i < all.length; i++) {
+        CompletableFuture<Void> future = i < started.size() ? started.get(i)
+            : published.get(i - started.size());
+        all[i] = future.handle((ignored, failure) -> failure);
+      }
+      return CompletableFuture.allOf(all).thenApply(ignored -> {
+        // Every context is checked on its own, so each tolerated failure is logged
+        Throwable reported = null;
+        for (int i = 0; i < all.length; i++) {
+          Throwable failure = (Throwable) all[i].join();
+          GHCommitState failedState = i < started.size() ? GHCommitState.PENDING : state;
+          if (failure == null || tolerate(failedState, failure)) {
+            continue;
+          }
+          if (reported == null) {
+            reported = StatusPublisher.unwrap(failure);
+          } else if (reported != StatusPublisher.unwrap(failure)) {
+            reported.addSuppressed(StatusPublisher.unwrap(failure));
+          }
+        }
+        return reported;
+      });
+    }
+
+    /**
+     * Queue the status for the given state, once per notified context
+     *
+     * @param state Pending/Success/Failure
+     * @return complete once the status of each context was posted to GitHub
+     */
+    public List<CompletableFuture<Void>> setStatus(GHCommitState state)
             throws IOException, InterruptedException {
-      listener().getLogger().println(
-          String.format(Messages.GitStatusWrapper_PRIMARY_LOG_TEMPLATE(),
-              state.toString(),
-                  this.step.getGitHubContext(), commit().getSHA1())
-      );
       String description = getDescriptionForState(state);
 
-      this.repository().createCommitStatus(commit().getSHA1(),
-          state, this.step.getTargetUrl(), description,
-          this.step.getGitHubContext());
+      List<CompletableFuture<Void>> published = new ArrayList<>();
+      for (StatusTarget target : targets()) {
+        listener().getLogger().println(
+            String.format(Messages.GitStatusWrapper_PRIMARY_LOG_TEMPLATE(),
+                state.toString(),
+                    target.getGitHubContext(), this.step.getSha())
+        );
+        // Each context has its own lane, they are posted concurrently by the publisher pool
+        published.add(StatusPublisher.publish(new StatusUpdate(target, state,
+            this.step.getTargetUrl(), description, run().getExternalizableId())));
+      }
+      return published;
+    }
+
+    /**
+     * @return whether a failure to set the status is only logged, as requested with bestEffort
+     */
+    private boolean tolerate(GHCommitState state, Throwable failure) {
+      if (!this.step.isBestEffort()) {
+        return false;
+      }
+      try {
+        logStatusFailure(listener(), state, failure);
+      } catch (IOException | InterruptedException e) {
+        LOGGER.log(Level.FINE, "Unable to log the status failure", e);
+      }
+      return true;
+    }
+
+    private static void logStatusFailure(TaskListener listener, GHCommitState state,
+        Throwable failure) {
+      Throwable cause = StatusPublisher.unwrap(failure);
+      LOGGER.log(Level.FINE, "Unable to set " + state + " status", cause);
+      listener.getLogger().println(
+          String.format(Messages.GitStatusWrapper_FAIL_TO_SET_STATUS(), state, cause.getMessage()));
     }
 
     private TaskListener listener() throws IOException, InterruptedException {
@@ -322,28 +526,30 @@ public final class GitStatusWrapperStep extends Step implements Serializable {
       return getContext().get(Run.class);
     }
 
-    private GHCommit commit() throws IOException, InterruptedException {
-      if (_commit == null) {
-        _commit = repository().getCommit(this.step.getSha());
+    /**
+     * @return one target per notified context, all sharing the inferred repo, sha and credentials
+     */
+    private List<StatusTarget> targets() throws IOException, InterruptedException {
+      if (targets == null) {
+        List<String> contexts = this.step.getGitHubContexts().isEmpty()
+            ? Collections.singletonList(this.step.getGitHubContext())
+            : this.step.getGitHubContexts();
+        String itemFullName = run().getParent().getFullName();
+        List<StatusTarget> resolved = new ArrayList<>();
+        for (String context : contexts) {
+          resolved.add(new StatusTarget(this.step.getCredentialsId(), this.step.getGitApiUrl(),
+              this.step.getAccount(), this.step.getRepo(), this.step.getSha(), context,
+              this.step.isVerifyCommit(), itemFullName));
+        }
+        targets = resolved;
       }
-      return _commit;
+      return targets;
     }
 
     private EnvVars env() throws IOException, InterruptedException {
       return getContext().get(EnvVars.class);
     }
 
-    public GHRepository repository() throws IOException, InterruptedException {
-      if (_repository == null) {
-        _repository = GitHubHelper.getRepoIfValid(this.step.getCredentialsId(), this.step.getGitApiUrl(),
-                JenkinsHelpers.getProxy(step.getGitApiUrl()), this.step.getAccount(),
-                this.step.getRepo(),
-                run().getParent());
-      }
-      return _repository;
-    }
-
-
     /***
      * get the description for the git status
      * resolve regex if it was set
@@ -362,13 +568,23 @@ public final class GitStatusWrapperStep extends Step implements Serializable {
           : this.step.getFailureDescription();
 
       String result = description;
-      if (description.startsWith("/") && description.endsWith("/")) {
+      if (DescriptionPatterns.isRegex(description)) {
         //Regex pattern found, resolve
-        String descRegex = description.substring(1, description.length() - 1);
-        final String buildLog = JenkinsHelpers.getBuildLogOutput(run());
-        Matcher matcher = Pattern.compile(descRegex, Pattern.MULTILINE).matcher(buildLog);
-        if (matcher.find()) {
-          result = matcher.group(1);
+        String descRegex = DescriptionPatterns.regexOf(description);
+        boolean success = state == GHCommitState.SUCCESS;
+        String match = null;
+        if (logFilter != null && logFilter.watches(success)) {
+          // Already matched on the output of the wrapped block
+          match = logFilter.getMatch(success);
+        }
+        if (match == null) {
+          // A match reported from an agent may still be on its way, the log has it
+          match = LogPatternMatcher
+              .find(run(), DescriptionPatterns.compile(descRegex),
+                  this.step.getLogScanTailKb() * 1024L, this.step.isLogScanReverse());
+        }
+        if (match != null) {
+          result = match;
         } else {
           listener().getLogger().println(
               String.format(Messages.GitStatusWrapper_FAIL_TO_MATCH_REGEX(), descRegex)
@@ -441,23 +657,41 @@ public final class GitStatusWrapperStep extends Step implements Serializable {
 
       @Override
       public final void onSuccess(StepContext context, Object result) {
+        List<CompletableFuture<Void>> published;
         try {
-          execution.setStatus(GHCommitState.SUCCESS);
+          published = execution.setStatus(GHCommitState.SUCCESS);
         } catch (Exception x) {
-          context.onFailure(x);
-          return;
+          execution.discardPending();
+          CompletableFuture<Void> failed = new CompletableFuture<>();
+          failed.completeExceptionally(x);
+          published = Collections.singletonList(failed);
         }
-        context.onSuccess(result);
+        execution.settle(GHCommitState.SUCCESS, published).thenAccept(failure -> {
+          if (failure != null) {
+            context.onFailure(failure);
+          } else {
+            context.onSuccess(result);
+          }
+        });
       }
 
       @Override
       public void onFailure(StepContext context, Throwable t) {
+        List<CompletableFuture<Void>> published;
         try {
-          execution.setStatus(GHCommitState.FAILURE);
+          published = execution.setStatus(GHCommitState.FAILURE);
         } catch (Exception x) {
+          execution.discardPending();
           t.addSuppressed(x);
+          context.onFailure(t);
+          return;
         }
-        context.onFailure(t);
+        execution.settle(GHCommitState.FAILURE, published).thenAccept(failure -> {
+          if (failure != null) {
+            t.addSuppressed(failure);
+          }
+          context.onFailure(t);
+        });
       }
 
       private static final long serialVersionUID = 1L;
@@ -467,6 +701,8 @@ public final class GitStatusWrapperStep extends Step implements Serializable {
     public void stop(Throwable cause) throws Exception {
       if (body != null) {
         body.cancel(cause);
+      } else {
+        abort(cause);
       }
     }
 
@@ -0,0 +1,122 @@
+package org.jenkinsci.plugins.gitstatuswrapper.credentials;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.cloudbees.plugins.credentials.Credentials;
+import com.cloudbees.plugins.credentials.CredentialsScope;
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
+import com.cloudbees.plugins.credentials.common.UsernamePasswordCredentials;
+import com.cloudbees.plugins.credentials.domains.Domain;
+import com.cloudbees.plugins.credentials.domains.HostnameSpecification;
+import com.cloudbees.plugins.credentials.impl.UsernamePasswordCredentialsImpl;
+import hudson.util.ListBoxModel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.jenkinsci.plugins.gitstatuswrapper.DummyCredentials;
+import org.jenkinsci.plugins.gitstatuswrapper.jenkins.JenkinsHelpers;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class CredentialsHelperTest {
+
+  @Rule
+  public JenkinsRule jenkins = new JenkinsRule();
+
+  @Test
+  public void credentialsAreCachedUntilTheStoreIsSaved() throws Exception {
+    assertNull(lookup());
+
+    List<Credentials> credentials = SystemCredentialsProvider.getInstance().getCredentials();
+    credentials.add(new DummyCredentials(CredentialsScope.GLOBAL, "user", "psw"));
+    assertEquals("user", lookup().getUsername());
+
+    credentials.set(0, new DummyCredentials(CredentialsScope.GLOBAL, "other", "psw"));
+    assertEquals("user", lookup().getUsername());
+
+    SystemCredentialsProvider.getInstance().save();
+    assertEquals("other", lookup().getUsername());
+  }
+
+  @Test
+  public void listingIsFilteredByApiUrlAndCachedUntilTheStoreIsSaved() throws Exception {
+    SystemCredentialsProvider provider = SystemCredentialsProvider.getInstance();
+    provider.getCredentials().add(new UsernamePasswordCredentialsImpl(CredentialsScope.GLOBAL,
+        "github", null, "user", "psw"));
+    Domain enterprise = new Domain("enterprise", null, Collections.singletonList(
+        new HostnameSpecification("ghe.example.com", null)));
+    Map<Domain, List<Credentials>> domains = new HashMap<>(provider.getDomainCredentialsMap());
+    domains.put(enterprise, new ArrayList<>(Collections.singletonList(
+        new UsernamePasswordCredentialsImpl(CredentialsScope.GLOBAL, "ghe", null, "user", "psw"))));
+    provider.setDomainCredentialsMap(domains);
+    provider.save();
+
+    assertEquals(Arrays.asList("", "github"), ids("https://api.github.com"));
+    assertEquals(Arrays.asList("", "ghe", "github"),
+        ids("https://ghe.example.com/api/v3"));
+
+    provider.getCredentials().clear();
+    assertEquals(Arrays.asList("", "github"), ids("https://api.github.com"));
+    provider.save();
+    assertEquals(Collections.singletonList(""), ids("https://api.github.com"));
+  }
+
+  @Test
+  public void listingKeepsPlainCredentialsAndTheCurrentValue() throws Exception {
+    SystemCredentialsProvider provider = SystemCredentialsProvider.getInstance();
+    provider.getCredentials().add(new DummyCredentials(CredentialsScope.GLOBAL, "user", "psw"));
+    provider.save();
+
+    assertEquals(Arrays.asList("", "dummy"), ids("https://api.github.com"));
+    assertEquals(Arrays.asList("", "deleted", "dummy"),
+        ids("https://api.github.com", "deleted"));
+    assertEquals(Arrays.asList("", "dummy"), ids("https://api.github.com", "dummy"));
+  }
+
+  @Test
+  public void listingMatchesDomainsOfTheWebHostAndAnyDomainForVariables() throws Exception {
+    SystemCredentialsProvider provider = SystemCredentialsProvider.getInstance();
+    Map<Domain, List<Credentials>> domains = new HashMap<>(provider.getDomainCredentialsMap());
+    domains.put(new Domain("github", null, Collections.singletonList(
+        new HostnameSpecification("github.com", null))), new ArrayList<>(Collections.singletonList(
+        new UsernamePasswordCredentialsImpl(CredentialsScope.GLOBAL, "web", null, "user", "psw"))));
+    domains.put(new Domain("enterprise", null, Collections.singletonList(
+        new HostnameSpecification("ghe.example.com", null))), new ArrayList<>(
+        Collections.singletonList(new UsernamePasswordCredentialsImpl(CredentialsScope.GLOBAL,
+            "ghe", null, "user", "psw"))));
+    provider.setDomainCredentialsMap(domains);
+    provider.save();
+
+    assertEquals(Arrays.asList("", "web"), ids("https://api.github.com"));
+    assertEquals(Arrays.asList("", "ghe"), ids("https://ghe.example.com/api/v3"));
+    assertEquals(Arrays.asList("", "ghe", "web"), ids(null));
+    assertEquals(Arrays.asList("", "ghe", "web"),
+        values(JenkinsHelpers.fillCredentialsIdItems(null, "${GITHUB_API}", null)));
+  }
+
+  private static List<String> ids(String gitApiUrl) {
+    return ids(gitApiUrl, null);
+  }
+
+  private static List<String> ids(String gitApiUrl, String credentialsId) {
+    return values(CredentialsHelper.listCredentials(null, gitApiUrl, credentialsId));
+  }
+
+  private static List<String> values(ListBoxModel listing) {
+    List<String> ids = new ArrayList<>();
+    for (ListBoxModel.Option option : listing) {
+      ids.add(option.value);
+    }
+    Collections.sort(ids);
+    return ids;
+  }
+
+  private static UsernamePasswordCredentials lookup() {
+    return CredentialsHelper.getCredentials(UsernamePasswordCredentials.class, "dummy", null);
+  }
+}
@@ -0,0 +1,69 @@
+package org.jenkinsci.plugins.gitstatuswrapper.github;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import hudson.model.Action;
+import hudson.model.Run;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class BuildInferenceTest {
+
+  @Test
+  public void valuesAreInferredOncePerBuild() throws IOException {
+    Run<?, ?> run = mockRun(new ArrayList<>());
+    AtomicInteger inferences = new AtomicInteger();
+
+    for (int i = 0; i < 3; i++) {
+      assertEquals("acme", BuildInference.of(run).get(run, "account", () -> {
+        inferences.incrementAndGet();
+        return "acme";
+      }));
+    }
+
+    assertEquals(1, inferences.get());
+    assertSame(BuildInference.of(run), BuildInference.of(run));
+  }
+
+  @Test
+  public void valuesAreInferredAgainOnceTheBuildGotNewActions() throws IOException {
+    List<Action> actions = new ArrayList<>();
+    Run<?, ?> run = mockRun(actions);
+    BuildInference inference = BuildInference.of(run);
+
+    assertEquals("first", inference.get(run, "sha", () -> "first"));
+    actions.add(mock(Action.class));
+
+    assertEquals("second", inference.get(run, "sha", () -> "second"));
+  }
+
+  @Test
+  public void failuresAreNotRemembered() throws IOException {
+    Run<?, ?> run = mockRun(new ArrayList<>());
+    BuildInference inference = BuildInference.of(run);
+
+    try {
+      inference.get(run, "repo", () -> {
+        throw new IOException("Unable to infer git repo from build data");
+      });
+      fail("the inference must fail");
+    } catch (IOException e) {
+      assertEquals("Unable to infer git repo from build data", e.getMessage());
+    }
+
+    assertEquals("widgets", inference.get(run, "repo", () -> "widgets"));
+  }
+
+  private static Run<?, ?> mockRun(List<Action> actions) {
+    Run<?, ?> run = mock(Run.class);
+    when(run.getActions()).thenReturn(actions);
+    return run;
+  }
+}
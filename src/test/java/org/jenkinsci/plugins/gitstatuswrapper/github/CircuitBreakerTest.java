@@ -0,0 +1,75 @@
+package org.jenkinsci.plugins.gitstatuswrapper.github;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.kohsuke.github.HttpException;
+
+public class CircuitBreakerTest {
+
+  private static final long NOW = 1_000_000_000L;
+  private static final long OPEN = TimeUnit.SECONDS.toMillis(30);
+
+  @Test
+  public void opensAfterConsecutiveFailures() {
+    CircuitBreaker breaker = new CircuitBreaker("https://ghe.example.com/api/v3");
+    for (int i = 0; i < 4; i++) {
+      assertTrue(breaker.allow(NOW));
+      breaker.failed(NOW);
+    }
+    breaker.succeeded();
+    for (int i = 0; i < 5; i++) {
+      assertTrue(breaker.allow(NOW));
+      breaker.failed(NOW);
+    }
+    assertFalse(breaker.allow(NOW));
+    assertFalse(breaker.allow(NOW + OPEN - 1));
+  }
+
+  @Test
+  public void letsASingleProbeThroughOnceOpenPeriodElapsed() {
+    CircuitBreaker breaker = open();
+    assertTrue(breaker.allow(NOW + OPEN));
+    assertFalse(breaker.allow(NOW + OPEN));
+
+    breaker.failed(NOW + OPEN);
+    assertFalse(breaker.allow(NOW + OPEN + 1));
+
+    assertTrue(breaker.allow(NOW + 2 * OPEN));
+    breaker.succeeded();
+    assertTrue(breaker.allow(NOW + 2 * OPEN));
+    assertTrue(breaker.allow(NOW + 2 * OPEN));
+  }
+
+  @Test
+  public void abortedProbeKeepsTheCircuitOpen() {
+    CircuitBreaker breaker = open();
+    assertTrue(breaker.allow(NOW + OPEN));
+    breaker.aborted();
+
+    // Another probe is let through, the circuit is not closed for everyone
+    assertTrue(breaker.allow(NOW + OPEN));
+    assertFalse(breaker.allow(NOW + OPEN));
+  }
+
+  @Test
+  public void onlyResponsesOfTheApiCountAsAnswers() {
+    assertTrue(RetryPolicy.isAnswered(new HttpException("Unprocessable", 422, "Unprocessable",
+        "https://api.github.com/repos/acme/widgets/statuses/abc")));
+    assertTrue(RetryPolicy.isAnswered(new FileNotFoundException("acme/widgets")));
+    assertFalse(RetryPolicy.isAnswered(new IllegalArgumentException("No credentials")));
+    assertFalse(RetryPolicy.isAnswered(new IOException("Unable to sign the token")));
+  }
+
+  private static CircuitBreaker open() {
+    CircuitBreaker breaker = new CircuitBreaker("https://ghe.example.com/api/v3");
+    for (int i = 0; i < 5; i++) {
+      breaker.failed(NOW);
+    }
+    return breaker;
+  }
+}
@@ -0,0 +1,491 @@
+package org.jenkinsci.plugins.gitstatuswrapper.github;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-process stand-in for the GitHub REST endpoints used by the plugin: /user, /users/{u},
+ * /repos/{o}/{r}, /repos/{o}/{r}/commits/{sha} and /repos/{o}/{r}/statuses/{sha}.
+ * Every posted status is recorded so tests and benchmarks can inspect them. Successful GETs
+ * carry an ETag and are answered with a 304 when the request already has it.
+ *
+ * Latency, rate limit headers and failures can be configured at any time to evaluate how the
+ * plugin behaves against a slow, throttled or failing GitHub.
+ */
+public class FakeGitHubServer implements Closeable {
+
+  private static final Pattern USERS = Pattern.compile("^/users/([^/]+)$");
+  private static final Pattern REPOS = Pattern.compile("^/repos/([^/]+)/([^/]+)$");
+  private static final Pattern COMMITS = Pattern
+      .compile("^/repos/([^/]+)/([^/]+)/commits/([^/]+)$");
+  private static final Pattern STATUSES = Pattern
+      .compile("^/repos/([^/]+)/([^/]+)/statuses/([^/]+)$");
+  private static final Pattern INSTALLATION = Pattern.compile("^/users/([^/]+)/installation$");
+  private static final Pattern ACCESS_TOKENS = Pattern
+      .compile("^/app/installations/([^/]+)/access_tokens$");
+
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final Queue<Status> statuses = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger requests = new AtomicInteger();
+  private final AtomicInteger failedRequests = new AtomicInteger();
+  private final AtomicLong statusIds = new AtomicLong();
+  private final List<Failure> failures = new CopyOnWriteArrayList<>();
+
+  private volatile long latencyMillis;
+  private volatile long latencyJitterMillis;
+  private volatile int rateLimit = 5000;
+  private final AtomicInteger rateRemaining = new AtomicInteger(5000);
+  private volatile long rateReset = nextRateReset();
+  private volatile double errorRate;
+  private final AtomicInteger tokens = new AtomicInteger();
+  private final AtomicInteger notModified = new AtomicInteger();
+  private final Set<InetSocketAddress> connections = ConcurrentHashMap.newKeySet();
+  private volatile long tokenLifetimeSeconds = 3600;
+  private final Map<String, Instant> tokenExpiries = new ConcurrentHashMap<>();
+  private volatile String lastAuthorization;
+  private volatile int errorRateCode = 500;
+
+  private FakeGitHubServer(HttpServer server) {
+    this.server = server;
+    this.executor = Executors.newCachedThreadPool(r -> {
+      Thread thread = new Thread(r, "FakeGitHubServer");
+      thread.setDaemon(true);
+      return thread;
+    });
+    server.setExecutor(executor);
+    server.createContext("/", this::handle);
+  }
+
+  /**
+   * Start a server on a free loopback port
+   */
+  public static FakeGitHubServer start() throws IOException {
+    FakeGitHubServer fake = new FakeGitHubServer(HttpServer
+        .create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0));
+    fake.server.start();
+    return fake;
+  }
+
+  /**
+   * @return the url to use as gitApiUrl
+   */
+  public String getApiUrl() {
+    return "http://127.0.0.1:" + server.getAddress().getPort();
+  }
+
+  /**
+   * @return statuses posted so far, oldest first
+   */
+  public List<Status> getStatuses() {
+    return new ArrayList<>(statuses);
+  }
+
+  /**
+   * @return number of requests served so far
+   */
+  public int getRequestCount() {
+    return requests.get();
+  }
+
+  /**
+   * @return number of requests answered with an error set up by {@link #failRequests}
+   */
+  public int getFailedRequestCount() {
+    return failedRequests.get();
+  }
+
+  /**
+   * Wait until at least the given number of statuses were posted
+   *
+   * @return statuses posted so far
+   */
+  public List<Status> awaitStatuses(int count, long timeout, TimeUnit unit)
+      throws InterruptedException, TimeoutException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    while (statuses.size() < count) {
+      if (System.nanoTime() > deadline) {
+        throw new TimeoutException(
+            "Expected " + count + " statuses, received " + statuses.size() + ": " + statuses);
+      }
+      Thread.sleep(10);
+    }
+    return getStatuses();
+  }
+
+  /**
+   * Delay every response
+   *
+   * @param millis fixed delay
+   * @param jitterMillis random delay added on top of the fixed one
+   */
+  public FakeGitHubServer setLatency(long millis, long jitterMillis) {
+    this.latencyMillis = millis;
+    this.latencyJitterMillis = jitterMillis;
+    return this;
+  }
+
+  /**
+   * Set the hourly request budget advertised in the X-RateLimit headers, requests beyond it get
+   * a 403 until {@link #resetRateLimit()}
+   */
+  public FakeGitHubServer setRateLimit(int limit) {
+    this.rateLimit = limit;
+    resetRateLimit();
+    return this;
+  }
+
+  /**
+   * Restore the whole request budget
+   */
+  public FakeGitHubServer resetRateLimit() {
+    rateRemaining.set(rateLimit);
+    rateReset = nextRateReset();
+    return this;
+  }
+
+  /**
+   * @return requests left in the current rate limit window
+   */
+  public int getRateRemaining() {
+    return Math.max(0, rateRemaining.get());
+  }
+
+  /**
+   * Answer the given number of requests whose path matches with an error
+   *
+   * @param pathRegex regex found in the request path, ex: /statuses/
+   * @param code http status code of the error
+   * @param times number of requests to fail, negative to fail all of them
+   */
+  public FakeGitHubServer failRequests(String pathRegex, int code, int times) {
+    failures.add(new Failure(Pattern.compile(pathRegex), code, times));
+    return this;
+  }
+
+  /**
+   * Lifetime of the installation tokens created for GitHub Apps, one hour by default, expired
+   * tokens are refused
+   */
+  public FakeGitHubServer setTokenLifetime(long seconds) {
+    tokenLifetimeSeconds = seconds;
+    return this;
+  }
+
+  /**
+   * @return the number of installation tokens created
+   */
+  public int getTokenCount() {
+    return tokens.get();
+  }
+
+  /**
+   * @return the Authorization header of the last request, null if it had none
+   */
+  public String getLastAuthorization() {
+    return lastAuthorization;
+  }
+
+  /**
+   * @return the number of distinct client connections requests were received on
+   */
+  public int getConnectionCount() {
+    return connections.size();
+  }
+
+  /**
+   * @return the number of conditional requests answered with a 304
+   */
+  public int getNotModifiedCount() {
+    return notModified.get();
+  }
+
+  /**
+   * Answer a random fraction of all requests with an error
+   */
+  public FakeGitHubServer setErrorRate(double rate, int code) {
+    this.errorRate = rate;
+    this.errorRateCode = code;
+    return this;
+  }
+
+  /**
+   * Forget posted statuses, counters and configured failures, latency and rate limit are kept
+   */
+  public void reset() {
+    statuses.clear();
+    requests.set(0);
+    failures.clear();
+    errorRate = 0;
+    tokens.set(0);
+    tokenExpiries.clear();
+    notModified.set(0);
+    connections.clear();
+    tokenLifetimeSeconds = 3600;
+    resetRateLimit();
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  protected void handle(HttpExchange exchange) throws IOException {
+    try {
+      requests.incrementAndGet();
+      connections.add(exchange.getRemoteAddress());
+      String path = exchange.getRequestURI().getPath();
+      String method = exchange.getRequestMethod();
+      delay();
+      if (!"/rate_limit".equals(path) && rateRemaining.decrementAndGet() < 0) {
+        respond(exchange, 403, "{\"message\":\"API rate limit exceeded\"}");
+        return;
+      }
+      int failure = failure(path);
+      if (failure > 0) {
+        respond(exchange, failure, "{\"message\":\"Injected failure\"}");
+        return;
+      }
+      Matcher matcher;
+      String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+      boolean app = path.startsWith("/app") || INSTALLATION.matcher(path).matches();
+      if (app && (authorization == null || !authorization.startsWith("Bearer "))) {
+        respond(exchange, 401, "{\"message\":\"A JSON web token could not be decoded\"}");
+        return;
+      }
+      if (authorization != null && authorization.startsWith("token ")) {
+        // Like GitHub, installation tokens are refused once expired
+        Instant expiry = tokenExpiries.get(authorization.substring("token ".length()));
+        if (expiry != null && !Instant.now().isBefore(expiry)) {
+          respond(exchange, 401, "{\"message\":\"Bad credentials\"}");
+          return;
+        }
+      }
+      lastAuthorization = authorization;
+      if ("GET".equals(method) && "/app".equals(path)) {
+        respond(exchange, 200, "{\"id\":1,\"name\":\"fake-app\"}");
+      } else if ("GET".equals(method) && INSTALLATION.matcher(path).matches()) {
+        respond(exchange, 200, "{\"id\":42}");
+      } else if ("POST".equals(method) && ACCESS_TOKENS.matcher(path).matches()) {
+        Instant expiresAt = Instant.now().plusSeconds(tokenLifetimeSeconds);
+        String token = "v1.token" + tokens.incrementAndGet();
+        tokenExpiries.put(token, expiresAt);
+        respond(exchange, 201, "{\"token\":" + quote(token) + ",\"expires_at\":"
+            + quote(expiresAt.toString()) + "}");
+      } else if ("GET".equals(method) && "/rate_limit".equals(path)) {
+        String rate = "{\"limit\":" + rateLimit + ",\"remaining\":" + getRateRemaining()
+            + ",\"reset\":" + rateReset + "}";
+        respond(exchange, 200, "{\"resources\":{\"core\":" + rate + "},\"rate\":" + rate + "}");
+      } else if ("GET".equals(method) && "/user".equals(path)) {
+        respond(exchange, 200, user("user", 1));
+      } else if ("GET".equals(method) && (matcher = USERS.matcher(path)).matches()) {
+        respond(exchange, 200, user(matcher.group(1), 2));
+      } else if ("GET".equals(method) && (matcher = REPOS.matcher(path)).matches()) {
+        respond(exchange, 200, repository(matcher.group(1), matcher.group(2)));
+      } else if ("GET".equals(method) && (matcher = COMMITS.matcher(path)).matches()) {
+        respond(exchange, 200, commit(path, matcher.group(3)));
+      } else if ("POST".equals(method) && (matcher = STATUSES.matcher(path)).matches()) {
+        String body = new String(read(exchange.getRequestBody()), StandardCharsets.UTF_8);
+        Status status = new Status(matcher.group(1), matcher.group(2), matcher.group(3),
+            field(body, "state"), field(body, "context"), field(body, "description"),
+            field(body, "target_url"));
+        statuses.add(status);
+        respond(exchange, 201, status.toJson(statusIds.incrementAndGet(), getApiUrl() + path));
+      } else {
+        respond(exchange, 404, "{\"message\":\"Not Found\"}");
+      }
+    } finally {
+      exchange.close();
+    }
+  }
+
+  protected void respond(HttpExchange exchange, int code, String json) throws IOException {
+    byte[] body = json.getBytes(StandardCharsets.UTF_8);
+    if (code == 200 && "GET".equals(exchange.getRequestMethod())) {
+      // Like GitHub, conditional requests answered with a 304 do not count against the rate limit
+      String etag = quote(Integer.toHexString(json.hashCode()));
+      exchange.getResponseHeaders().set("ETag", etag);
+      if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+        notModified.incrementAndGet();
+        rateRemaining.incrementAndGet();
+        code = 304;
+        body = new byte[0];
+      }
+    }
+    exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+    exchange.getResponseHeaders().set("X-RateLimit-Limit", String.valueOf(rateLimit));
+    exchange.getResponseHeaders().set("X-RateLimit-Remaining", String.valueOf(getRateRemaining()));
+    exchange.getResponseHeaders().set("X-RateLimit-Reset", String.valueOf(rateReset));
+    exchange.sendResponseHeaders(code, body.length == 0 ? -1 : body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+  }
+
+  private void delay() {
+    long millis = latencyMillis;
+    if (latencyJitterMillis > 0) {
+      millis += ThreadLocalRandom.current().nextLong(latencyJitterMillis);
+    }
+    if (millis > 0) {
+      try {
+        Thread.sleep(millis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * @return the error code to answer with, 0 to answer normally
+   */
+  private int failure(String path) {
+    for (Failure failure : failures) {
+      if (failure.pathRegex.matcher(path).find() && failure.consume()) {
+        failedRequests.incrementAndGet();
+        return failure.code;
+      }
+    }
+    if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+      return errorRateCode;
+    }
+    return 0;
+  }
+
+  private static long nextRateReset() {
+    return TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + 3600;
+  }
+
+  private String user(String login, int id) {
+    return "{\"login\":" + quote(login) + ",\"id\":" + id + ",\"type\":\"User\",\"url\":"
+        + quote(getApiUrl() + "/users/" + login) + "}";
+  }
+
+  private String repository(String owner, String name) {
+    return "{\"id\":1,\"name\":" + quote(name) + ",\"full_name\":" + quote(owner + "/" + name)
+        + ",\"owner\":" + user(owner, 2) + ",\"url\":"
+        + quote(getApiUrl() + "/repos/" + owner + "/" + name) + ",\"private\":false}";
+  }
+
+  private String commit(String path, String sha) {
+    return "{\"sha\":" + quote(sha) + ",\"url\":" + quote(getApiUrl() + path) + "}";
+  }
+
+  private static byte[] read(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    int read;
+    while ((read = in.read(buffer)) != -1) {
+      out.write(buffer, 0, read);
+    }
+    return out.toByteArray();
+  }
+
+  private static String field(String json, String name) {
+    Matcher matcher = Pattern.compile("\"" + name + "\"\\s*:\\s*\"((?:[^\"\\\\]|\\\\.)*)\"")
+        .matcher(json);
+    if (!matcher.find()) {
+      return null;
+    }
+    StringBuilder value = new StringBuilder();
+    String escaped = matcher.group(1);
+    for (int i = 0; i < escaped.length(); i++) {
+      char c = escaped.charAt(i);
+      if (c == '\\' && i + 1 < escaped.length()) {
+        c = escaped.charAt(++i);
+        if (c == 'n') {
+          c = '\n';
+        } else if (c == 'u' && i + 4 < escaped.length()) {
+          c = (char) Integer.parseInt(escaped.substring(i + 1, i + 5), 16);
+          i += 4;
+        }
+      }
+      value.append(c);
+    }
+    return value.toString();
+  }
+
+  private static String quote(String value) {
+    return value == null ? "null" : "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+  }
+
+  private static final class Failure {
+
+    private final Pattern pathRegex;
+    private final int code;
+    private final AtomicInteger remaining;
+
+    Failure(Pattern pathRegex, int code, int times) {
+      this.pathRegex = pathRegex;
+      this.code = code;
+      this.remaining = new AtomicInteger(times);
+    }
+
+    boolean consume() {
+      return remaining.get() < 0 || remaining.getAndUpdate(n -> n > 0 ? n - 1 : n) > 0;
+    }
+  }
+
+  /**
+   * A commit status received by the server
+   */
+  public static final class Status {
+
+    public final String owner;
+    public final String repo;
+    public final String sha;
+    public final String state;
+    public final String context;
+    public final String description;
+    public final String targetUrl;
+
+    Status(String owner, String repo, String sha, String state, String context,
+        String description, String targetUrl) {
+      this.owner = owner;
+      this.repo = repo;
+      this.sha = sha;
+      this.state = state;
+      this.context = context;
+      this.description = description;
+      this.targetUrl = targetUrl;
+    }
+
+    String toJson(long id, String url) {
+      return "{\"id\":" + id + ",\"url\":" + quote(url) + ",\"state\":" + quote(state)
+          + ",\"context\":" + quote(context) + ",\"description\":" + quote(description)
+          + ",\"target_url\":" + quote(targetUrl) + "}";
+    }
+
+    @Override
+    public String toString() {
+      return owner + "/" + repo + "@" + sha + " " + context + "=" + state;
+    }
+  }
+}
@@ -0,0 +1,160 @@
+package org.jenkinsci.plugins.gitstatuswrapper.github;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.cloudbees.plugins.credentials.CredentialsScope;
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
+import hudson.model.Result;
+import hudson.util.Secret;
+import java.net.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.jenkinsci.plugins.gitstatuswrapper.credentials.CredentialsHelper;
+import org.jenkinsci.plugins.gitstatuswrapper.credentials.GitHubAppCredentials;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.kohsuke.github.GitHub;
+
+public class GitHubAppAuthTest {
+
+  @Rule
+  public JenkinsRule jenkins = new JenkinsRule();
+
+  private KeyPair keys;
+  private GitHubAppCredentials app;
+  private FakeGitHubServer server;
+
+  @Before
+  public void setUp() throws Exception {
+    KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+    generator.initialize(2048);
+    keys = generator.generateKeyPair();
+    app = new GitHubAppCredentials(CredentialsScope.GLOBAL, "app", null, "1234",
+        Secret.fromString(pem("RSA PRIVATE KEY", pkcs1(keys.getPrivate().getEncoded()))));
+    server = FakeGitHubServer.start();
+  }
+
+  @After
+  public void tearDown() {
+    server.close();
+    GitHubAppAuth.invalidateAll();
+    GitHubClientCache.invalidateAll();
+  }
+
+  @Test
+  public void readsPkcs1AndPkcs8Keys() throws Exception {
+    byte[] encoded = keys.getPrivate().getEncoded();
+    assertArrayEquals(encoded,
+        GitHubAppAuth.privateKey(pem("RSA PRIVATE KEY", pkcs1(encoded))).getEncoded());
+    assertArrayEquals(encoded, GitHubAppAuth.privateKey(pem("PRIVATE KEY", encoded)).getEncoded());
+  }
+
+  @Test
+  public void jwtIsSignedWithTheAppKey() throws Exception {
+    String[] jwt = GitHubAppAuth.jwt(app, 1_500_000_000_000L).split("\\.");
+    assertEquals(3, jwt.length);
+
+    Signature signature = Signature.getInstance("SHA256withRSA");
+    signature.initVerify(keys.getPublic());
+    signature.update((jwt[0] + "." + jwt[1]).getBytes(StandardCharsets.US_ASCII));
+    assertTrue(signature.verify(Base64.getUrlDecoder().decode(jwt[2])));
+    assertEquals("{\"iat\":1499999940,\"exp\":1500000540,\"iss\":\"1234\"}",
+        new String(Base64.getUrlDecoder().decode(jwt[1]), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void installationTokensAreSharedUntilTheyNearExpiry() throws Exception {
+    String token = GitHubAppAuth.installationToken(app, server.getApiUrl(), Proxy.NO_PROXY, "acme");
+    assertEquals(token,
+        GitHubAppAuth.installationToken(app, server.getApiUrl(), Proxy.NO_PROXY, "acme"));
+    assertEquals(1, server.getTokenCount());
+
+    GitHubAppAuth.invalidateAll();
+    server.setTokenLifetime(60);
+    GitHubAppAuth.installationToken(app, server.getApiUrl(), Proxy.NO_PROXY, "acme");
+    GitHubAppAuth.installationToken(app, server.getApiUrl(), Proxy.NO_PROXY, "acme");
+    assertEquals(3, server.getTokenCount());
+  }
+
+  @Test
+  public void clientsOfAppCredentialsUseInstallationTokens() throws Exception {
+    SystemCredentialsProvider.getInstance().getCredentials().add(app);
+    CredentialsHelper.invalidateAll();
+
+    GitHub github = GitHubHelper
+        .getGitHub("app", server.getApiUrl(), Proxy.NO_PROXY, "acme", null);
+    github.getRepository("acme/widgets");
+
+    assertEquals("token v1.token1", server.getLastAuthorization());
+  }
+
+  @Test
+  public void longWrappersPostTheirLastStatusWithAFreshToken() throws Exception {
+    SystemCredentialsProvider.getInstance().getCredentials().add(app);
+    CredentialsHelper.invalidateAll();
+    // Outlived by the body, and so close to expiry that every status gets a new one
+    server.setTokenLifetime(2);
+    WorkflowJob p = jenkins.createProject(WorkflowJob.class, "p");
+    p.setDefinition(new CpsFlowDefinition("gitStatusWrapper(account: 'acme', "
+        + "gitHubContext: 'ci', credentialsId: 'app', description: 'Building', "
+        + "successDescription: 'Built', gitApiUrl: '" + server.getApiUrl() + "', "
+        + "repo: 'widgets', sha: '439ac0b0c4870bf5936e84940d73128db905e93d', "
+        + "targetUrl: 'http://ci/job/p/1') { sleep 3 }", true));
+
+    jenkins.assertBuildStatus(Result.SUCCESS, p.scheduleBuild2(0));
+
+    List<FakeGitHubServer.Status> statuses = server.awaitStatuses(2, 10, TimeUnit.SECONDS);
+    assertEquals("pending", statuses.get(0).state);
+    assertEquals("success", statuses.get(1).state);
+    assertTrue(server.getTokenCount() > 1);
+  }
+
+  private static String pem(String type, byte[] der) {
+    return "-----BEGIN " + type + "-----\n" + Base64.getMimeEncoder().encodeToString(der)
+        + "\n-----END " + type + "-----\n";
+  }
+
+  /**
+   * @return the PKCS#1 key held by a PKCS#8 key, the content of its last element
+   */
+  private static byte[] pkcs1(byte[] pkcs8) {
+    int offset = contentOf(pkcs8, 0)[0];
+    // version and algorithm identifier
+    for (int i = 0; i < 2; i++) {
+      int[] element = contentOf(pkcs8, offset);
+      offset = element[0] + element[1];
+    }
+    int[] key = contentOf(pkcs8, offset);
+    return Arrays.copyOfRange(pkcs8, key[0], key[0] + key[1]);
+  }
+
+  /**
+   * @return start and length of the content of the DER element at the offset
+   */
+  private static int[] contentOf(byte[] der, int offset) {
+    int length = der[offset + 1] & 0xff;
+    int start = offset + 2;
+    if (length >= 0x80) {
+      int bytes = length & 0x7f;
+      length = 0;
+      for (int i = 0; i < bytes; i++) {
+        length = (length << 8) | (der[start + i] & 0xff);
+      }
+      start += bytes;
+    }
+    return new int[]{start, length};
+  }
+}
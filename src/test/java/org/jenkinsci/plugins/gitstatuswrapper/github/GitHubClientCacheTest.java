@@ -0,0 +1,69 @@
+package org.jenkinsci.plugins.gitstatuswrapper.github;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Test;
+import org.kohsuke.github.GHRepository;
+import org.kohsuke.github.GitHub;
+import org.mockito.Mockito;
+
+public class GitHubClientCacheTest {
+
+  @After
+  public void invalidate() {
+    GitHubClientCache.invalidateAll();
+  }
+
+  @Test
+  public void concurrentLookupsOfARepositoryShareOneCall() throws Exception {
+    GitHub github = Mockito.mock(GitHub.class);
+    AtomicInteger lookups = new AtomicInteger();
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<GHRepository>> results = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        results.add(executor.submit(() -> GitHubClientCache.repository(github, "owner/repo", () -> {
+          lookups.incrementAndGet();
+          release.await(10, TimeUnit.SECONDS);
+          return new GHRepository();
+        })));
+      }
+      Thread.sleep(100);
+      release.countDown();
+      GHRepository repository = results.get(0).get(10, TimeUnit.SECONDS);
+      for (Future<GHRepository> result : results) {
+        assertSame(repository, result.get(10, TimeUnit.SECONDS));
+      }
+      assertEquals(1, lookups.get());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void repositoriesAreCachedPerClient() throws Exception {
+    GitHub github = Mockito.mock(GitHub.class);
+    GitHub other = Mockito.mock(GitHub.class);
+    GHRepository repository = GitHubClientCache
+        .repository(github, "owner/repo", GHRepository::new);
+
+    assertSame(repository,
+        GitHubClientCache.repository(github, "owner/repo", GHRepository::new));
+    assertNotSame(repository,
+        GitHubClientCache.repository(other, "owner/repo", GHRepository::new));
+    assertNotSame(repository,
+        GitHubClientCache.repository(github, "owner/other", GHRepository::new));
+  }
+}
@@ -0,0 +1,61 @@
+package org.jenkinsci.plugins.gitstatuswrapper.github;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.net.Proxy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.kohsuke.github.GHCommitState;
+import org.kohsuke.github.GitHub;
+import org.kohsuke.github.GitHubBuilder;
+
+public class GitHubConnectorTest {
+
+  @Rule
+  public JenkinsRule jenkins = new JenkinsRule();
+
+  private FakeGitHubServer server;
+
+  @Before
+  public void setUp() throws Exception {
+    server = FakeGitHubServer.start();
+  }
+
+  @After
+  public void tearDown() {
+    server.close();
+  }
+
+  @Test
+  public void repeatedGetsAreConditionalRequests() throws Exception {
+    GitHub github = github();
+
+    assertEquals("acme/widgets", github.getRepository("acme/widgets").getFullName());
+    assertEquals("acme/widgets", github.getRepository("acme/widgets").getFullName());
+    assertEquals("acme/widgets", github.getRepository("acme/widgets").getFullName());
+
+    assertEquals(2, server.getNotModifiedCount());
+  }
+
+  @Test
+  public void clientsShareKeptAliveConnections() throws Exception {
+    github().getRepository("acme/widgets").createCommitStatus("abc", GHCommitState.PENDING,
+        null, "Building", "ci");
+    github().getRepository("acme/widgets").createCommitStatus("abc", GHCommitState.SUCCESS,
+        null, "Built", "ci");
+
+    assertEquals(2, server.getStatuses().size());
+    assertEquals(1, server.getConnectionCount());
+  }
+
+  private GitHub github() throws IOException {
+    GitHubBuilder builder = new GitHubBuilder().withEndpoint(server.getApiUrl());
+    builder.withOAuthToken("token", "user");
+    builder.withConnector(GitHubConnector.of(server.getApiUrl(), Proxy.NO_PROXY));
+    return builder.build();
+  }
+}
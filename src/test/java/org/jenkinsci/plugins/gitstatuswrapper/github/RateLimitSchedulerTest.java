@@ -0,0 +1,80 @@
+package org.jenkinsci.plugins.gitstatuswrapper.github;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class RateLimitSchedulerTest {
+
+  private static final long NOW = 1_000_000_000L;
+  private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+  @Test
+  public void postsRightAwayWithoutObservedRateLimit() {
+    RateLimitScheduler.Budget budget = new RateLimitScheduler.Budget();
+    assertEquals(0, budget.delay(false, NOW));
+    assertEquals(0, budget.delay(true, NOW));
+  }
+
+  @Test
+  public void shedsPendingUnderTheReserve() {
+    RateLimitScheduler.Budget budget = new RateLimitScheduler.Budget();
+    budget.observe(5000, 400, NOW + HOUR);
+    assertEquals(RateLimitScheduler.SHED, budget.delay(false, NOW));
+    assertEquals(0, budget.delay(true, NOW));
+  }
+
+  @Test
+  public void terminalWaitsForResetOnceExhausted() {
+    RateLimitScheduler.Budget budget = new RateLimitScheduler.Budget();
+    budget.observe(5000, 0, NOW + 10_000);
+    assertEquals(RateLimitScheduler.SHED, budget.delay(false, NOW));
+    assertEquals(10_000, budget.delay(true, NOW));
+  }
+
+  @Test
+  public void pacesPendingOnceTheBurstIsSpent() {
+    RateLimitScheduler.Budget budget = new RateLimitScheduler.Budget();
+    budget.observe(5000, 1000, NOW + HOUR);
+    long delay = 0;
+    for (int i = 0; i < 100 && delay == 0; i++) {
+      delay = budget.delay(false, NOW);
+    }
+    // The calls left above the reserve after the burst are spread over an hour, about one every
+    // 7.5s
+    assertTrue("delay " + delay, delay > 7_000 && delay <= 8_000);
+    assertEquals(0, budget.delay(true, NOW));
+  }
+
+  @Test
+  public void terminalStatusesDoNotStarvePending() {
+    RateLimitScheduler.Budget budget = new RateLimitScheduler.Budget();
+    budget.observe(5000, 4000, NOW + HOUR);
+    while (budget.delay(false, NOW) == 0) {
+      // Spend the burst
+    }
+    for (int i = 0; i < 100; i++) {
+      assertEquals(0, budget.delay(true, NOW));
+    }
+    // Still about one PENDING per second, the terminal statuses only took from the quota
+    long delay = budget.delay(false, NOW);
+    assertTrue("delay " + delay, delay > 0 && delay <= 2_000);
+  }
+
+  @Test
+  public void quotaIsBackAfterTheReset() {
+    RateLimitScheduler.Budget budget = new RateLimitScheduler.Budget();
+    budget.observe(5000, 0, NOW + 10_000);
+    assertEquals(0, budget.delay(false, NOW + 10_000));
+  }
+
+  @Test
+  public void detectsRateLimitFailures() {
+    assertTrue(RateLimitScheduler.isRateLimited(new IOException("API rate limit reached")));
+    assertFalse(RateLimitScheduler.isRateLimited(new IOException("Connection reset")));
+  }
+}
@@ -0,0 +1,99 @@
+package org.jenkinsci.plugins.gitstatuswrapper.github;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class SingleFlightTest {
+
+  private static final int CALLERS = 8;
+
+  @Test
+  public void concurrentCallersShareOneCall() throws Exception {
+    SingleFlight<String, Object> flight = new SingleFlight<>();
+    AtomicInteger calls = new AtomicInteger();
+    Object result = new Object();
+
+    List<Future<Object>> results = runConcurrently(flight, calls, () -> result);
+
+    for (Future<Object> future : results) {
+      assertSame(result, future.get(10, TimeUnit.SECONDS));
+    }
+    assertEquals(1, calls.get());
+    assertEquals(0, flight.size());
+
+    flight.run("owner/repo", () -> calls.incrementAndGet());
+    assertEquals(2, calls.get());
+  }
+
+  @Test
+  public void concurrentCallersShareTheFailure() throws Exception {
+    SingleFlight<String, Object> flight = new SingleFlight<>();
+    AtomicInteger calls = new AtomicInteger();
+
+    List<Future<Object>> results = runConcurrently(flight, calls, () -> {
+      throw new FileNotFoundException("owner/repo");
+    });
+
+    for (Future<Object> future : results) {
+      try {
+        future.get(10, TimeUnit.SECONDS);
+        fail("the lookup must fail");
+      } catch (ExecutionException e) {
+        assertEquals(FileNotFoundException.class, e.getCause().getClass());
+      }
+    }
+    assertEquals(1, calls.get());
+    assertEquals(0, flight.size());
+  }
+
+  private static List<Future<Object>> runConcurrently(SingleFlight<String, Object> flight,
+      AtomicInteger calls, SingleFlight.Call<Object> call) throws InterruptedException {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+    try {
+      List<Future<Object>> results = new ArrayList<>();
+      results.add(executor.submit(() -> flight.run("owner/repo", () -> {
+        calls.incrementAndGet();
+        started.countDown();
+        await(release);
+        return call.call();
+      })));
+      started.await(10, TimeUnit.SECONDS);
+      for (int i = 1; i < CALLERS; i++) {
+        results.add(executor.submit(() -> flight.run("owner/repo", () -> {
+          calls.incrementAndGet();
+          return call.call();
+        })));
+      }
+      // Leave the other callers time to join the call in flight
+      Thread.sleep(200);
+      release.countDown();
+      return results;
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static void await(CountDownLatch latch) throws IOException {
+    try {
+      latch.await(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      throw new IOException(e);
+    }
+  }
+}
@@ -0,0 +1,233 @@
+package org.jenkinsci.plugins.gitstatuswrapper.github;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.cloudbees.plugins.credentials.CredentialsScope;
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.jenkinsci.plugins.gitstatuswrapper.DummyCredentials;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.kohsuke.github.GHCommitState;
+
+public class StatusOutboxTest {
+
+  private static final String SHA = "439ac0b0c4870bf5936e84940d73128db905e93d";
+
+  @Rule
+  public JenkinsRule jenkins = new JenkinsRule();
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private FakeGitHubServer server;
+
+  @Before
+  public void setUp() throws Exception {
+    SystemCredentialsProvider.getInstance().getCredentials()
+        .add(new DummyCredentials(CredentialsScope.GLOBAL, "user", "psw"));
+    server = FakeGitHubServer.start();
+  }
+
+  @After
+  public void tearDown() {
+    server.close();
+    GitHubClientCache.invalidateAll();
+  }
+
+  @Test
+  public void pendingStatusesSurviveReopening() throws Exception {
+    File journal = new File(folder.getRoot(), "outbox.log");
+    StatusOutbox outbox = new StatusOutbox(journal);
+    outbox.record(update("ci/unit", GHCommitState.PENDING, "Build\tstarted\n"));
+    outbox.record(update("ci/unit", GHCommitState.SUCCESS, "[OK] 100%"));
+    outbox.record(update("ci/lint", GHCommitState.FAILURE, null));
+    outbox.sync();
+
+    List<StatusUpdate> pending = new StatusOutbox(journal).getPending();
+    assertEquals(3, pending.size());
+    assertEquals(GHCommitState.PENDING, pending.get(0).getState());
+    assertEquals("Build\tstarted\n", pending.get(0).getDescription());
+    assertEquals("[OK] 100%", pending.get(1).getDescription());
+    assertEquals(null, pending.get(2).getDescription());
+    assertEquals("ci/lint", pending.get(2).getTarget().getGitHubContext());
+    assertEquals("folder/job", pending.get(2).getTarget().getItemFullName());
+    assertEquals(3, Files.readAllLines(journal.toPath()).size());
+  }
+
+  @Test
+  public void acknowledgedAndTruncatedRecordsAreSkipped() throws Exception {
+    File journal = new File(folder.getRoot(), "outbox.log");
+    StatusOutbox outbox = new StatusOutbox(journal);
+    outbox.record(update("ci/unit", GHCommitState.PENDING, "Build started"));
+    outbox.record(update("ci/unit", GHCommitState.SUCCESS, "Build passed"));
+    outbox.sync();
+    Files.write(journal.toPath(), "ack\t1\nadd\t3\t15".getBytes(StandardCharsets.UTF_8),
+        StandardOpenOption.APPEND);
+
+    StatusOutbox reopened = new StatusOutbox(journal);
+    List<StatusUpdate> pending = reopened.getPending();
+    assertEquals(1, pending.size());
+    assertEquals(GHCommitState.SUCCESS, pending.get(0).getState());
+
+    reopened.record(update("ci/unit", GHCommitState.FAILURE, "Build failed"));
+    reopened.sync();
+    assertEquals(2, new StatusOutbox(journal).getPending().size());
+  }
+
+  @Test
+  public void onlyTheNewestStatusOfATargetIsDeliveredAfterReopening() throws Exception {
+    File journal = new File(folder.getRoot(), "outbox.log");
+    StatusOutbox outbox = new StatusOutbox(journal);
+    outbox.record(new StatusUpdate(target("unit"), GHCommitState.PENDING, null, "Testing"));
+    outbox.record(new StatusUpdate(target("unit"), GHCommitState.SUCCESS, null, "Tested"));
+    outbox.record(new StatusUpdate(target("lint"), GHCommitState.FAILURE, null, "Linted"));
+    outbox.sync();
+
+    StatusOutbox reopened = new StatusOutbox(journal);
+    reopened.redeliver();
+
+    awaitDelivered(reopened);
+    List<String> descriptions = new ArrayList<>();
+    for (FakeGitHubServer.Status status : server.getStatuses()) {
+      descriptions.add(status.description);
+    }
+    assertEquals(2, descriptions.size());
+    assertEquals(new HashSet<>(Arrays.asList("Tested", "Linted")),
+        new HashSet<>(descriptions));
+    reopened.sync();
+    assertTrue(new StatusOutbox(journal).getPending().isEmpty());
+  }
+
+  @Test
+  public void statusesTooOldAreGivenUp() throws Exception {
+    File journal = new File(folder.getRoot(), "outbox.log");
+    StatusOutbox outbox = new StatusOutbox(journal);
+    outbox.record(new StatusUpdate(target("unit"), GHCommitState.SUCCESS, null, "Tested"));
+    outbox.sync();
+    String[] fields = Files.readAllLines(journal.toPath()).get(0).split("\t", -1);
+    fields[2] = "0";
+    Files.write(journal.toPath(), (String.join("\t", fields) + "\n")
+        .getBytes(StandardCharsets.UTF_8));
+
+    StatusOutbox reopened = new StatusOutbox(journal);
+    reopened.redeliver();
+    reopened.sync();
+
+    assertTrue(reopened.getPending().isEmpty());
+    assertEquals(0, server.getRequestCount());
+    assertTrue(new StatusOutbox(journal).getPending().isEmpty());
+  }
+
+  @Test
+  public void targetsBeingPostedAreSkipped() throws Exception {
+    server.setLatency(500, 0);
+    StatusOutbox outbox = new StatusOutbox(new File(folder.getRoot(), "outbox.log"));
+    CompletableFuture<Void> first = outbox
+        .publish(new StatusUpdate(target("unit"), GHCommitState.PENDING, null, "Testing"));
+    outbox.record(new StatusUpdate(target("unit"), GHCommitState.SUCCESS, null, "Tested"));
+    outbox.redeliver();
+
+    StatusPublisher.await(first);
+    awaitPending(outbox, 1);
+    assertEquals(1, server.getStatuses().size());
+    assertEquals(GHCommitState.SUCCESS, outbox.getPending().get(0).getState());
+
+    outbox.redeliver();
+    awaitDelivered(outbox);
+    List<FakeGitHubServer.Status> statuses = server.getStatuses();
+    assertEquals(2, statuses.size());
+    assertEquals("Tested", statuses.get(1).description);
+  }
+
+  @Test
+  public void pendingStatusOfAFinishedBuildBecomesAnError() throws Exception {
+    FreeStyleProject project = jenkins.createFreeStyleProject();
+    FreeStyleBuild build = jenkins.buildAndAssertSuccess(project);
+    File journal = new File(folder.getRoot(), "outbox.log");
+    StatusOutbox outbox = new StatusOutbox(journal);
+    outbox.record(new StatusUpdate(target("unit"), GHCommitState.PENDING, null, "Testing",
+        build.getExternalizableId()));
+    outbox.sync();
+
+    StatusOutbox reopened = new StatusOutbox(journal);
+    reopened.redeliver();
+
+    awaitDelivered(reopened);
+    List<FakeGitHubServer.Status> statuses = server.getStatuses();
+    assertEquals(1, statuses.size());
+    assertEquals("error", statuses.get(0).state);
+    assertEquals("The build did not complete", statuses.get(0).description);
+  }
+
+  @Test
+  public void olderStatusIsAcknowledgedOnceANewerOneIsPosted() throws Exception {
+    // Fails the PENDING post and its retries
+    server.failRequests("/statuses/", 502, 1 + RetryPolicy.MAX_RETRIES);
+    StatusOutbox outbox = new StatusOutbox(new File(folder.getRoot(), "outbox.log"));
+    outbox.publish(new StatusUpdate(target("unit"), GHCommitState.PENDING, null, "Testing"))
+        .handle((ignored, failure) -> failure).get();
+    assertEquals(1, outbox.getPending().size());
+
+    StatusPublisher.await(outbox
+        .publish(new StatusUpdate(target("unit"), GHCommitState.SUCCESS, null, "Tested")));
+    awaitDelivered(outbox);
+    outbox.redeliver();
+    List<FakeGitHubServer.Status> statuses = server.getStatuses();
+    assertEquals(1, statuses.size());
+    assertEquals("success", statuses.get(0).state);
+  }
+
+  @Test
+  public void discardedStatusIsNotDeliveredAgain() throws Exception {
+    server.failRequests("/statuses/", 502, 1 + RetryPolicy.MAX_RETRIES);
+    StatusOutbox outbox = new StatusOutbox(new File(folder.getRoot(), "outbox.log"));
+    CompletableFuture<Void> published = outbox
+        .publish(new StatusUpdate(target("unit"), GHCommitState.PENDING, null, "Testing"));
+    outbox.discard(published);
+    published.handle((ignored, failure) -> failure).get();
+
+    awaitDelivered(outbox);
+    outbox.redeliver();
+    assertTrue(server.getStatuses().isEmpty());
+  }
+
+  private static void awaitDelivered(StatusOutbox outbox) throws InterruptedException {
+    awaitPending(outbox, 0);
+  }
+
+  private static void awaitPending(StatusOutbox outbox, int count) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+    while (outbox.getPending().size() != count && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(count, outbox.getPending().size());
+  }
+
+  private StatusTarget target(String context) {
+    return new StatusTarget("dummy", server.getApiUrl(), "acme", "widgets", SHA, context, false,
+        null);
+  }
+
+  private static StatusUpdate update(String context, GHCommitState state, String description) {
+    return new StatusUpdate(new StatusTarget("creds", "https://api.github.com", "acme", "widgets",
+        SHA, context, false, "folder/job"), state,
+        "https://jenkins.example.com/job/folder/job/job/1/", description);
+  }
+}
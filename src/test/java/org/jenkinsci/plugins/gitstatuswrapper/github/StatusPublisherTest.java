@@ -0,0 +1,88 @@
+package org.jenkinsci.plugins.gitstatuswrapper.github;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.cloudbees.plugins.credentials.CredentialsScope;
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.jenkinsci.plugins.gitstatuswrapper.DummyCredentials;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.kohsuke.github.GHCommitState;
+
+public class StatusPublisherTest {
+
+  private static final String SHA = "439ac0b0c4870bf5936e84940d73128db905e93d";
+
+  @Rule
+  public JenkinsRule jenkins = new JenkinsRule();
+
+  private FakeGitHubServer server;
+
+  @Before
+  public void setUp() throws Exception {
+    SystemCredentialsProvider.getInstance().getCredentials()
+        .add(new DummyCredentials(CredentialsScope.GLOBAL, "user", "psw"));
+    server = FakeGitHubServer.start();
+  }
+
+  @After
+  public void tearDown() {
+    server.close();
+    GitHubClientCache.invalidateAll();
+  }
+
+  @Test
+  public void onlyTheLatestWaitingStatusOfATargetIsPosted() throws Exception {
+    server.setLatency(300, 0);
+    StatusTarget target = new StatusTarget("dummy", server.getApiUrl(), "acme", "widgets", SHA,
+        "ci", false, null);
+
+    CompletableFuture<Void> first = StatusPublisher.enqueue(update(target,
+        GHCommitState.PENDING, "Building"));
+    // The first update is being posted, the next ones wait behind it
+    while (server.getRequestCount() == 0) {
+      Thread.sleep(10);
+    }
+    CompletableFuture<Void> superseded = StatusPublisher.enqueue(update(target,
+        GHCommitState.PENDING, "Still building"));
+    CompletableFuture<Void> last = StatusPublisher.enqueue(update(target,
+        GHCommitState.SUCCESS, "Built"));
+
+    StatusPublisher.await(last);
+    assertTrue(first.isDone());
+    assertTrue(superseded.isDone() && !superseded.isCompletedExceptionally());
+    List<FakeGitHubServer.Status> statuses = server.awaitStatuses(2, 10, TimeUnit.SECONDS);
+    assertEquals(2, statuses.size());
+    assertEquals("Building", statuses.get(0).description);
+    assertEquals("Built", statuses.get(1).description);
+  }
+
+  @Test
+  public void statusesOfDifferentTargetsAreNotCoalesced() throws Exception {
+    StatusTarget lint = new StatusTarget("dummy", server.getApiUrl(), "acme", "widgets", SHA,
+        "lint", false, null);
+    StatusTarget unit = new StatusTarget("dummy", server.getApiUrl(), "acme", "widgets", SHA,
+        "unit", false, null);
+
+    CompletableFuture<Void> first = StatusPublisher.enqueue(update(lint,
+        GHCommitState.SUCCESS, "Linted"));
+    CompletableFuture<Void> second = StatusPublisher.enqueue(update(unit,
+        GHCommitState.SUCCESS, "Tested"));
+
+    StatusPublisher.await(first);
+    StatusPublisher.await(second);
+    assertEquals(2, server.getStatuses().size());
+  }
+
+  private static StatusUpdate update(StatusTarget target, GHCommitState state,
+      String description) {
+    return new StatusUpdate(target, state, "http://ci/job/1", description);
+  }
+}
@@ -0,0 +1,73 @@
+package org.jenkinsci.plugins.gitstatuswrapper.jenkins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import hudson.util.FormValidation;
+import java.util.regex.Pattern;
+import org.jenkinsci.plugins.gitstatuswrapper.builder.GitStatusWrapperBuilder;
+import org.jenkinsci.plugins.gitstatuswrapper.pipeline.GitStatusWrapperStep;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class DescriptionPatternsTest {
+
+  @Rule
+  public JenkinsRule jenkins = new JenkinsRule();
+
+  @Test
+  public void detectsRegexDescriptions() {
+    assertTrue(DescriptionPatterns.isRegex("/^buildVersion=(.*)$/"));
+    assertFalse(DescriptionPatterns.isRegex("Build passed"));
+    assertFalse(DescriptionPatterns.isRegex("/"));
+    assertFalse(DescriptionPatterns.isRegex(null));
+    assertEquals("^buildVersion=(.*)$", DescriptionPatterns.regexOf("/^buildVersion=(.*)$/"));
+  }
+
+  @Test
+  public void compilesOnceInMultilineMode() {
+    Pattern pattern = DescriptionPatterns.compile("^version=(.*)$");
+    assertSame(pattern, DescriptionPatterns.compile("^version=(.*)$"));
+    assertTrue((pattern.flags() & Pattern.MULTILINE) != 0);
+  }
+
+  @Test
+  public void rejectsInvalidRegexes() {
+    DescriptionPatterns.validate("/^buildVersion=(.*)$/");
+    DescriptionPatterns.validate("Not a regex (");
+    try {
+      DescriptionPatterns.validate("/^buildVersion=(.*$/");
+      fail("an unclosed group is invalid");
+    } catch (IllegalArgumentException e) {
+      assertTrue(e.getMessage().startsWith("Invalid description regex"));
+    }
+  }
+
+  @Test
+  public void checksVariablesAsPlainText() {
+    assertEquals(FormValidation.Kind.OK, DescriptionPatterns.check("/${BUILD_TAG}/").kind);
+    assertEquals(FormValidation.Kind.OK,
+        DescriptionPatterns.check("/^${PREFIX}=(.*)$/").kind);
+    assertEquals(FormValidation.Kind.ERROR,
+        DescriptionPatterns.check("/^${PREFIX}=(.*$/").kind);
+    assertEquals(FormValidation.Kind.OK, DescriptionPatterns.check(null).kind);
+  }
+
+  @Test
+  public void validatesDescriptionFields() {
+    GitStatusWrapperStep.DescriptorImpl step = jenkins.jenkins
+        .getDescriptorByType(GitStatusWrapperStep.DescriptorImpl.class);
+    GitStatusWrapperBuilder.DescriptorImpl builder = jenkins.jenkins
+        .getDescriptorByType(GitStatusWrapperBuilder.DescriptorImpl.class);
+
+    assertEquals(FormValidation.Kind.OK, step.doCheckSuccessDescription("/${BUILD_TAG}/").kind);
+    assertEquals(FormValidation.Kind.ERROR, step.doCheckFailureDescription("/(/").kind);
+    assertEquals(FormValidation.Kind.OK,
+        builder.doCheckSuccessDescription("/^${PREFIX}=(.*)$/").kind);
+    assertEquals(FormValidation.Kind.ERROR, builder.doCheckFailureDescription("/[/").kind);
+  }
+}
@@ -0,0 +1,171 @@
+package org.jenkinsci.plugins.gitstatuswrapper.jenkins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import hudson.model.Run;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.regex.Pattern;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+public class LogPatternMatcherTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static final String LOG = "Started by user admin\n"
+      + "buildVersion=1.2.3\r\n"
+      + "Tests run: 42\n"
+      + "  all passed\n"
+      + "buildVersion=4.5.6\n";
+
+  @Test
+  public void findsFirstMatchLineByLine() throws Exception {
+    assertEquals("1.2.3", find("^buildVersion=(.*)$"));
+  }
+
+  @Test
+  public void findsMatchSpanningLines() throws Exception {
+    assertEquals("42", find("Tests run: (\\d+)\\s+all passed"));
+  }
+
+  @Test
+  public void findsMatchSpanningLinesBeyondFirstWindow() throws Exception {
+    StringBuilder log = new StringBuilder();
+    for (int i = 0; i < LogPatternMatcher.WINDOW_LINES * 3; i++) {
+      log.append("noise ").append(i).append('\n');
+    }
+    log.append("result\nOK\n");
+    assertEquals("OK", LogPatternMatcher.find(stream(log.toString()), StandardCharsets.UTF_8,
+        Pattern.compile("result\\n(\\w+)", Pattern.MULTILINE)));
+  }
+
+  @Test
+  public void ignoresConsoleNotes() throws Exception {
+    String log = "\u001B[8mha:AAAA\u001B[0mbuildVersion=7.8.9\n";
+    assertEquals("7.8.9", LogPatternMatcher.find(stream(log), StandardCharsets.UTF_8,
+        Pattern.compile("^buildVersion=(.*)$", Pattern.MULTILINE)));
+  }
+
+  @Test
+  public void returnsWholeMatchWithoutGroup() throws Exception {
+    assertEquals("Tests run: 42", find("Tests run: \\d+"));
+  }
+
+  @Test
+  public void returnsNullWithoutMatch() throws Exception {
+    assertNull(find("^deployed to (.*)$"));
+  }
+
+  @Test
+  public void detectsPatternsSpanningLines() {
+    assertFalse(LogPatternMatcher.spansLines(Pattern.compile("^buildVersion=(.*)$")));
+    assertTrue(LogPatternMatcher.spansLines(Pattern.compile("a\\nb")));
+    assertTrue(LogPatternMatcher.spansLines(Pattern.compile("a\\s+b")));
+    assertTrue(LogPatternMatcher.spansLines(Pattern.compile("a[^x]*b")));
+    assertTrue(LogPatternMatcher.spansLines(Pattern.compile("(?s)a.*b")));
+    assertTrue(LogPatternMatcher.spansLines(Pattern.compile("a.*b", Pattern.DOTALL)));
+    assertTrue(LogPatternMatcher.spansLines(Pattern.compile("a\\Hb")));
+    assertTrue(LogPatternMatcher.spansLines(Pattern.compile("a\\Rb")));
+    assertTrue(LogPatternMatcher.spansLines(Pattern.compile("a\\p{Space}b")));
+    assertTrue(LogPatternMatcher.spansLines(Pattern.compile("a\\P{Alpha}b")));
+    assertTrue(LogPatternMatcher.spansLines(Pattern.compile("a\\x{0A}b")));
+  }
+
+  @Test
+  public void detectsPatternsStayingOnALine() {
+    assertFalse(LogPatternMatcher.spansLines(Pattern.compile("a\\S+b")));
+    assertFalse(LogPatternMatcher.spansLines(Pattern.compile("a\\h+b")));
+    assertFalse(LogPatternMatcher.spansLines(Pattern.compile("\\p{Alpha}+=(\\d+)")));
+    assertFalse(LogPatternMatcher.spansLines(Pattern.compile("\\pL+")));
+  }
+
+  @Test
+  public void cutsOverlongLines() throws Exception {
+    StringBuilder log = new StringBuilder("start");
+    for (int i = 0; i < PlainLogReader.MAX_LINE_BYTES; i++) {
+      log.append('x');
+    }
+    log.append("end\nnext\n");
+    assertEquals("start", LogPatternMatcher.find(stream(log.toString()), StandardCharsets.UTF_8,
+        Pattern.compile("start")));
+    assertNull(LogPatternMatcher.find(stream(log.toString()), StandardCharsets.UTF_8,
+        Pattern.compile("end")));
+    assertEquals("next", LogPatternMatcher.find(stream(log.toString()), StandardCharsets.UTF_8,
+        Pattern.compile("^next$")));
+  }
+
+  @Test
+  public void scansOnlyTheTailOfTheLog() throws Exception {
+    Run<?, ?> run = run(LOG + noise(200) + "Tests run: 7\n  all passed\n");
+
+    assertEquals("7", LogPatternMatcher.find(run, Pattern.compile("Tests run: (\\d+)"), 64,
+        false));
+    assertNull(LogPatternMatcher.find(run, Pattern.compile("^buildVersion=(.*)$"), 64, false));
+    assertEquals("1.2.3", LogPatternMatcher.find(run, Pattern.compile("^buildVersion=(.*)$"), 0,
+        false));
+  }
+
+  @Test
+  public void readsBackwardsForTheLastMatch() throws Exception {
+    StringBuilder longLine = new StringBuilder("result=");
+    for (int i = 0; i < 20000; i++) {
+      longLine.append('y');
+    }
+    Run<?, ?> run = run(LOG + noise(2000) + longLine + " done\n" + noise(10));
+
+    assertEquals("4.5.6", LogPatternMatcher.find(run,
+        Pattern.compile("^buildVersion=(.*)$", Pattern.MULTILINE), 0, true));
+    assertEquals("done", LogPatternMatcher.find(run, Pattern.compile("^result=y+ (\\w+)$"), 0,
+        true));
+    assertEquals("42", LogPatternMatcher.find(run,
+        Pattern.compile("Tests run: (\\d+)\\s+all passed"), 0, true));
+  }
+
+  @Test
+  public void readsBackwardsOnlyTheTail() throws Exception {
+    Run<?, ?> run = run(LOG + noise(200) + "buildVersion=7.8.9\nbuildVersion=9.9.9\n");
+
+    assertEquals("9.9.9", LogPatternMatcher.find(run, Pattern.compile("^buildVersion=(.*)$"), 64,
+        true));
+    assertEquals("9.9.9", LogPatternMatcher.find(run,
+        Pattern.compile("buildVersion=(\\S+)\\n?$"), 64, true));
+    assertNull(LogPatternMatcher.find(run, Pattern.compile("^Tests run: (\\d+)$"), 64, true));
+  }
+
+  private Run<?, ?> run(String log) throws Exception {
+    File file = folder.newFile("log");
+    Files.write(file.toPath(), log.getBytes(StandardCharsets.UTF_8));
+    Run<?, ?> run = Mockito.mock(Run.class);
+    Mockito.when(run.getLogFile()).thenReturn(file);
+    Mockito.when(run.getCharset()).thenReturn(StandardCharsets.UTF_8);
+    Mockito.when(run.getLogInputStream()).thenAnswer(invocation -> new FileInputStream(file));
+    return run;
+  }
+
+  private static String noise(int lines) {
+    StringBuilder noise = new StringBuilder();
+    for (int i = 0; i < lines; i++) {
+      noise.append("noise ").append(i).append('\n');
+    }
+    return noise.toString();
+  }
+
+  private static String find(String regex) throws Exception {
+    return LogPatternMatcher.find(stream(LOG), StandardCharsets.UTF_8,
+        Pattern.compile(regex, Pattern.MULTILINE));
+  }
+
+  private static ByteArrayInputStream stream(String log) {
+    return new ByteArrayInputStream(log.getBytes(StandardCharsets.UTF_8));
+  }
+}
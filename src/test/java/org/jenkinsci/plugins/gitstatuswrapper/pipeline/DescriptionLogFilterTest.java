@@ -0,0 +1,61 @@
+package org.jenkinsci.plugins.gitstatuswrapper.pipeline;
+
+import static org.junit.Assert.assertEquals;
+
+import com.cloudbees.plugins.credentials.CredentialsScope;
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
+import hudson.model.Result;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.jenkinsci.plugins.gitstatuswrapper.DummyCredentials;
+import org.jenkinsci.plugins.gitstatuswrapper.github.FakeGitHubServer;
+import org.jenkinsci.plugins.gitstatuswrapper.github.GitHubClientCache;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class DescriptionLogFilterTest {
+
+  @Rule
+  public JenkinsRule jenkins = new JenkinsRule();
+
+  private FakeGitHubServer server;
+
+  @Before
+  public void setUp() throws Exception {
+    SystemCredentialsProvider.getInstance().getCredentials()
+        .add(new DummyCredentials(CredentialsScope.GLOBAL, "user", "psw"));
+    server = FakeGitHubServer.start();
+  }
+
+  @After
+  public void tearDown() {
+    server.close();
+    GitHubClientCache.invalidateAll();
+  }
+
+  @Test
+  public void matchesOutputOfStepsRunningOnAnAgent() throws Exception {
+    jenkins.createOnlineSlave(jenkins.jenkins.getLabel("remote"));
+    WorkflowJob p = jenkins.createProject(WorkflowJob.class, "p");
+    // Printed before the wrapper, only a search of the whole build log would find it
+    p.setDefinition(new CpsFlowDefinition("node('remote') { echo 'buildVersion=0.0.1'; " +
+        "gitStatusWrapper( account: 'acme', gitHubContext: 'ci', credentialsId: 'dummy', " +
+        "description: 'Building', successDescription: '/^buildVersion=(.*)$/', " +
+        "watchBodyOutput: true, gitApiUrl: '" + server.getApiUrl() + "', repo: 'widgets', " +
+        "sha: '439ac0b0c4870bf5936e84940d73128db905e93d', targetUrl: 'http://ci/job/p/1') " +
+        "{ sh 'echo buildVersion=1.2.3' } }", true));
+
+    jenkins.assertBuildStatus(Result.SUCCESS, p.scheduleBuild2(0));
+
+    // The PENDING status may have been superseded by the final one
+    List<FakeGitHubServer.Status> statuses = server.awaitStatuses(1, 10, TimeUnit.SECONDS);
+    FakeGitHubServer.Status last = statuses.get(statuses.size() - 1);
+    assertEquals("success", last.state);
+    assertEquals("1.2.3", last.description);
+  }
+}
@@ -0,0 +1,105 @@
+package org.jenkinsci.plugins.gitstatuswrapper.pipeline;
+
+import com.cloudbees.plugins.credentials.CredentialsScope;
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
+import hudson.model.Result;
+import hudson.model.queue.QueueTaskFuture;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import org.jenkinsci.plugins.gitstatuswrapper.DummyCredentials;
+import org.jenkinsci.plugins.gitstatuswrapper.github.FakeGitHubServer;
+import org.jenkinsci.plugins.gitstatuswrapper.github.GitHubClientCache;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.recipes.WithTimeout;
+
+/**
+ * Runs many concurrent gitStatusWrapper pipelines against {@link FakeGitHubServer} and reports the
+ * status throughput and the overhead of the step over the same pipeline without it.
+ *
+ * Skipped unless enabled, ex: mvn test -Dtest=GitStatusWrapperLoadTest
+ * -DgitStatusWrapper.loadTest.pipelines=200 -DgitStatusWrapper.loadTest.latencyMillis=50
+ */
+public class GitStatusWrapperLoadTest {
+
+  private static final int PIPELINES = Integer.getInteger("gitStatusWrapper.loadTest.pipelines", 0);
+  private static final long LATENCY_MILLIS = Long
+      .getLong("gitStatusWrapper.loadTest.latencyMillis", 50);
+
+  @Rule
+  public JenkinsRule j = new JenkinsRule();
+
+  @Test
+  @WithTimeout(1800)
+  public void concurrentPipelines() throws Exception {
+    Assume.assumeTrue("gitStatusWrapper.loadTest.pipelines is not set", PIPELINES > 0);
+    GitHubClientCache.invalidateAll();
+    SystemCredentialsProvider.getInstance().getCredentials()
+        .add(new DummyCredentials(CredentialsScope.GLOBAL, "user", "psw"));
+
+    try (FakeGitHubServer server = FakeGitHubServer.start()) {
+      server.setLatency(LATENCY_MILLIS, LATENCY_MILLIS / 2);
+
+      List<Long> baseline = durations(runAll("baseline", i -> "echo 'pipeline " + i + "'"));
+
+      server.reset();
+      long start = System.nanoTime();
+      List<Long> wrapped = durations(runAll("wrapped", i ->
+          "gitStatusWrapper( account: 'myAccount', gitHubContext: 'ci/load', " +
+              "credentialsId: 'dummy', description: 'OK', gitApiUrl: '" + server.getApiUrl()
+              + "', repo: 'myRepo', sha: '" + String.format("%040x", i) + "', " +
+              "targetUrl: 'http://www.someTarget.com') { echo 'pipeline " + i + "' }"));
+      double seconds = (System.nanoTime() - start) / 1e9;
+
+      List<FakeGitHubServer.Status> statuses = server.getStatuses();
+      long successes = statuses.stream().filter(status -> "success".equals(status.state)).count();
+      Assert.assertEquals(PIPELINES, successes);
+
+      System.out.println(String.format(
+          "[load] %d pipelines, %d statuses in %.1fs (%.1f statuses/s), %d requests. "
+              + "Step overhead p50 %d ms, p99 %d ms",
+          PIPELINES, statuses.size(), seconds, statuses.size() / seconds,
+          server.getRequestCount(), percentile(wrapped, 50) - percentile(baseline, 50),
+          percentile(wrapped, 99) - percentile(baseline, 99)));
+    }
+  }
+
+  private List<WorkflowRun> runAll(String name, IntFunction<String> script) throws Exception {
+    List<QueueTaskFuture<WorkflowRun>> futures = new ArrayList<>();
+    for (int i = 0; i < PIPELINES; i++) {
+      WorkflowJob p = j.createProject(WorkflowJob.class, name + "-" + i);
+      p.setDefinition(new CpsFlowDefinition(script.apply(i), true));
+      futures.add(p.scheduleBuild2(0));
+    }
+    List<WorkflowRun> runs = new ArrayList<>();
+    for (QueueTaskFuture<WorkflowRun> future : futures) {
+      WorkflowRun run = future.get(10, TimeUnit.MINUTES);
+      j.assertBuildStatus(Result.SUCCESS, run);
+      runs.add(run);
+    }
+    return runs;
+  }
+
+  private static List<Long> durations(List<WorkflowRun> runs) {
+    List<Long> durations = new ArrayList<>();
+    for (WorkflowRun run : runs) {
+      durations.add(run.getDuration());
+    }
+    Collections.sort(durations);
+    return durations;
+  }
+
+  private static long percentile(List<Long> sorted, int percentile) {
+    int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+    return sorted.get(Math.max(0, index));
+  }
+}
@@ -6,11 +6,15 @@ import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
 import hudson.model.Result;
 import org.eclipse.jgit.annotations.NonNull;
 import org.jenkinsci.plugins.gitstatuswrapper.DummyCredentials;
+import org.jenkinsci.plugins.gitstatuswrapper.github.FakeGitHubServer;
+import org.jenkinsci.plugins.gitstatuswrapper.github.GitHubClientCache;
 import org.jenkinsci.plugins.gitstatuswrapper.github.GitHubHelper;
 import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
 import org.jenkinsci.plugins.workflow.job.WorkflowJob;
 import org.jenkinsci.plugins.workflow.job.WorkflowRun;
 import org.jenkinsci.plugins.workflow.test.steps.SemaphoreStep;
+import org.junit.Assert;
+import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -25,13 +29,17 @@ import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
 import java.net.Proxy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 
 @RunWith(PowerMockRunner.class)
 @PrepareForTest({GitStatusWrapperStep.class, GitHubHelper.class})
-@PowerMockIgnore ({"javax.crypto.*"})
+@PowerMockIgnore ({"javax.crypto.*", "com.sun.net.httpserver.*"})
 public class GitStatusWrapperStepTest {
   public static final String SUCCESSFUL_LOG_MSG = "Successful Log!";
 
@@ -49,6 +57,14 @@ public class GitStatusWrapperStepTest {
           "targetUrl: 'http://www.someTarget.com', gitApiUrl: 'https://api.example.com') " +
           "{ echo '"+ SUCCESSFUL_LOG_MSG + "' }}";
 
+  public static final String SUCCESS_JENKINS_WATCH_OUTPUT_PAYLOAD =
+      "node { echo 'buildVersion=0.0.1'; gitStatusWrapper( account: 'myAccount', " +
+          "gitHubContext: 'status/context', credentialsId: 'dummy', description: 'OK', " +
+          "successDescription: '/^buildVersion=(.*)$/', watchBodyOutput: true, " +
+          "repo: 'myRepo', sha: '439ac0b0c4870bf5936e84940d73128db905e93d', " +
+          "targetUrl: 'http://www.someTarget.com') " +
+          "{ echo 'buildVersion=1.2.3' }}";
+
   public static final String FAIL_JENKINS_PAYLOAD_BAD_BLOCK =
       "node { gitStatusWrapper( account: 'myAccount', gitHubContext: 'status/context', " +
           "credentialsId: 'dummy', description: 'OK', " +
@@ -67,6 +83,11 @@ public class GitStatusWrapperStepTest {
   @Rule
   public RestartableJenkinsRule jenkins = new RestartableJenkinsRule();
 
+  @Before
+  public void clearClientCache() {
+    GitHubClientCache.invalidateAll();
+  }
+
   @Test
   public void build() throws Exception {
     jenkins.then((JenkinsRule j) -> {
@@ -81,6 +102,29 @@ public class GitStatusWrapperStepTest {
     });
   }
 
+  @Test
+  public void buildWithFullShaSkipsCommitLookup() throws Exception {
+    jenkins.then((JenkinsRule j) -> {
+      StatusWrapperTestObj statusWrapperTestObj = successfulPluginSetup(j, SUCCESS_JENKINS_PAYLOAD);
+      Mockito.verify(statusWrapperTestObj.getRepo(), Mockito.never()).getCommit(anyString());
+      Mockito.verify(statusWrapperTestObj.getRepo(), Mockito.times(1)).createCommitStatus(
+          Mockito.eq("439ac0b0c4870bf5936e84940d73128db905e93d"), Mockito.eq(GHCommitState.SUCCESS),
+          anyString(), anyString(), anyString());
+    });
+  }
+
+  @Test
+  public void buildWithWatchedBodyOutput() throws Exception {
+    jenkins.then((JenkinsRule j) -> {
+      StatusWrapperTestObj statusWrapperTestObj = setupStableEnvMockObj(j,
+          SUCCESS_JENKINS_WATCH_OUTPUT_PAYLOAD);
+      j.assertBuildStatus(Result.SUCCESS, j.waitForCompletion(statusWrapperTestObj.getRun()));
+      Mockito.verify(statusWrapperTestObj.getRepo(), Mockito.times(1)).createCommitStatus(
+          anyString(), Mockito.eq(GHCommitState.SUCCESS), anyString(), Mockito.eq("1.2.3"),
+          anyString());
+    });
+  }
+
   @Test
   public void buildWithRestart() throws Exception {
     jenkins.then((JenkinsRule j) -> {
@@ -102,17 +146,168 @@ public class GitStatusWrapperStepTest {
     jenkins.then((JenkinsRule j) -> {
       StatusWrapperTestObj statusWrapperTestObj = setupStableEnvMockObj(j, FAIL_JENKINS_PAYLOAD_BAD_BLOCK);
       j.assertBuildStatus(Result.FAILURE, j.waitForCompletion(statusWrapperTestObj.getRun()));
-      Mockito.verify(statusWrapperTestObj.getRepo(), Mockito.times(1)).createCommitStatus(anyString(), Mockito.eq(GHCommitState.PENDING), anyString(), anyString(), anyString());
+      Mockito.verify(statusWrapperTestObj.getRepo(), Mockito.atMost(1)).createCommitStatus(anyString(), Mockito.eq(GHCommitState.PENDING), anyString(), anyString(), anyString());
       Mockito.verify(statusWrapperTestObj.getRepo(), Mockito.times(1)).createCommitStatus(anyString(), Mockito.eq(GHCommitState.FAILURE), anyString(), anyString(), anyString());
       j.assertLogContains("exit 1", statusWrapperTestObj.getRun());
     });
   }
 
+  @Test
+  public void buildAgainstFakeGitHub() throws Exception {
+    jenkins.then((JenkinsRule j) -> {
+      try (FakeGitHubServer server = FakeGitHubServer.start()) {
+        server.setLatency(20, 10);
+        WorkflowRun run = fakeGitHubSetup(j, server);
+        j.assertBuildStatus(Result.SUCCESS, j.waitForCompletion(run));
+
+        List<FakeGitHubServer.Status> statuses = server.awaitStatuses(1, 10, TimeUnit.SECONDS);
+        FakeGitHubServer.Status last = statuses.get(statuses.size() - 1);
+        Assert.assertEquals("success", last.state);
+        Assert.assertEquals("status/context", last.context);
+        Assert.assertEquals("OK", last.description);
+        Assert.assertEquals("439ac0b0c4870bf5936e84940d73128db905e93d", last.sha);
+        Assert.assertTrue(statuses.size() <= 2);
+      }
+    });
+  }
+
+  @Test
+  public void buildAgainstFailingFakeGitHubMustFail() throws Exception {
+    jenkins.then((JenkinsRule j) -> {
+      try (FakeGitHubServer server = FakeGitHubServer.start()) {
+        server.failRequests("/statuses/", 422, -1);
+        WorkflowRun run = fakeGitHubSetup(j, server);
+        j.assertBuildStatus(Result.FAILURE, j.waitForCompletion(run));
+        Assert.assertTrue(server.getStatuses().isEmpty());
+        // The block does not wait for the PENDING status, its failure is reported afterwards
+        j.assertLogContains(SUCCESSFUL_LOG_MSG, run);
+      }
+    });
+  }
+
+  @Test
+  public void buildAgainstFakeGitHubRetriesServerErrors() throws Exception {
+    jenkins.then((JenkinsRule j) -> {
+      try (FakeGitHubServer server = FakeGitHubServer.start()) {
+        server.failRequests("/statuses/", 502, 2);
+        WorkflowRun run = fakeGitHubSetup(j, server);
+        j.assertBuildStatus(Result.SUCCESS, j.waitForCompletion(run));
+        List<FakeGitHubServer.Status> statuses = server.getStatuses();
+        Assert.assertEquals("success", statuses.get(statuses.size() - 1).state);
+      }
+    });
+  }
+
+  @Test
+  public void bodyEndingBeforePendingIsSetPostsOnlyTheFinalStatus() throws Exception {
+    jenkins.then((JenkinsRule j) -> {
+      try (FakeGitHubServer server = FakeGitHubServer.start()) {
+        // The PENDING post fails and backs off for its retries, seconds in all, while the body
+        // runs, the failures it leaves are retried by the SUCCESS post
+        server.failRequests("/statuses/", 502, 3);
+        WorkflowRun run = fakeGitHubSetup(j, server, "", "semaphore 'body'");
+        SemaphoreStep.waitForStart("body/1", run);
+        while (server.getFailedRequestCount() == 0) {
+          Thread.sleep(10);
+        }
+        SemaphoreStep.success("body/1", null);
+        j.assertBuildStatus(Result.SUCCESS, j.waitForCompletion(run));
+        // The SUCCESS status superseded the PENDING one still queued
+        List<FakeGitHubServer.Status> statuses = server.getStatuses();
+        Assert.assertEquals(1, statuses.size());
+        Assert.assertEquals("success", statuses.get(0).state);
+      }
+    });
+  }
+
+  @Test
+  public void buildAgainstFailingFakeGitHubWithBestEffort() throws Exception {
+    jenkins.then((JenkinsRule j) -> {
+      try (FakeGitHubServer server = FakeGitHubServer.start()) {
+        server.failRequests("/statuses/", 422, -1);
+        WorkflowRun run = fakeGitHubSetup(j, server, "bestEffort: true, ");
+        j.assertBuildStatus(Result.SUCCESS, j.waitForCompletion(run));
+        j.assertLogContains("Unable to set PENDING status", run);
+        j.assertLogContains(SUCCESSFUL_LOG_MSG, run);
+        j.assertLogContains("Unable to set SUCCESS status", run);
+      }
+    });
+  }
+
+  @Test
+  public void buildWithMultipleContexts() throws Exception {
+    jenkins.then((JenkinsRule j) -> {
+      try (FakeGitHubServer server = FakeGitHubServer.start()) {
+        WorkflowRun run = fakeGitHubSetup(j, server,
+            "gitHubContexts: ['status/unit', 'status/lint', 'status/docs'], ");
+        j.assertBuildStatus(Result.SUCCESS, j.waitForCompletion(run));
+
+        Map<String, String> results = new HashMap<>();
+        for (FakeGitHubServer.Status status : server.getStatuses()) {
+          results.put(status.context, status.state);
+        }
+        Assert.assertEquals(3, results.size());
+        Assert.assertEquals("success", results.get("status/unit"));
+        Assert.assertEquals("success", results.get("status/lint"));
+        Assert.assertEquals("success", results.get("status/docs"));
+      }
+    });
+  }
+
+  @Test
+  public void parallelWrappersReportTheirOwnResult() throws Exception {
+    jenkins.then((JenkinsRule j) -> {
+      try (FakeGitHubServer server = FakeGitHubServer.start()) {
+        addCredentials();
+        String wrapper = "gitStatusWrapper( account: 'myAccount', credentialsId: 'dummy', " +
+            "description: 'OK', gitApiUrl: '" + server.getApiUrl() + "', repo: 'myRepo', " +
+            "sha: '439ac0b0c4870bf5936e84940d73128db905e93d', " +
+            "targetUrl: 'http://www.someTarget.com', ";
+        WorkflowJob p = j.createProject(WorkflowJob.class, "p");
+        p.setDefinition(new CpsFlowDefinition(
+            "parallel unit: { " + wrapper + "gitHubContext: 'status/unit') { echo 'unit' } }, " +
+                "lint: { " + wrapper + "gitHubContext: 'status/lint') { error 'lint' } }", true));
+        j.assertBuildStatus(Result.FAILURE, p.scheduleBuild2(0));
+
+        Map<String, String> results = new HashMap<>();
+        // Each wrapper waited for its final status, a PENDING one may have been superseded
+        for (FakeGitHubServer.Status status : server.getStatuses()) {
+          results.put(status.context, status.state);
+        }
+        Assert.assertEquals("success", results.get("status/unit"));
+        Assert.assertEquals("failure", results.get("status/lint"));
+      }
+    });
+  }
+
+  private WorkflowRun fakeGitHubSetup(@NonNull JenkinsRule j, FakeGitHubServer server)
+      throws Exception {
+    return fakeGitHubSetup(j, server, "");
+  }
+
+  private WorkflowRun fakeGitHubSetup(@NonNull JenkinsRule j, FakeGitHubServer server,
+      String extraArguments) throws Exception {
+    return fakeGitHubSetup(j, server, extraArguments, "echo '"+ SUCCESSFUL_LOG_MSG + "'");
+  }
+
+  private WorkflowRun fakeGitHubSetup(@NonNull JenkinsRule j, FakeGitHubServer server,
+      String extraArguments, String body) throws Exception {
+    addCredentials();
+    WorkflowJob p = j.createProject(WorkflowJob.class, "p");
+    p.setDefinition(new CpsFlowDefinition(
+        "gitStatusWrapper( account: 'myAccount', gitHubContext: 'status/context', " + extraArguments +
+            "credentialsId: 'dummy', description: 'OK', gitApiUrl: '" + server.getApiUrl() + "', " +
+            "repo: 'myRepo', sha: '439ac0b0c4870bf5936e84940d73128db905e93d', " +
+            "targetUrl: 'http://www.someTarget.com') " +
+            "{ " + body + " }", true));
+    return p.scheduleBuild2(0).waitForStart();
+  }
+
   private StatusWrapperTestObj successfulPluginSetup(@NonNull JenkinsRule j, String jobDefinition) throws Exception {
     StatusWrapperTestObj statusWrapperTestObj = setupStableEnvMockObj(j, jobDefinition);
 
     j.assertBuildStatus(Result.SUCCESS, j.waitForCompletion(statusWrapperTestObj.getRun()));
-    Mockito.verify(statusWrapperTestObj.getRepo(), Mockito.times(1)).createCommitStatus(anyString(), Mockito.eq(GHCommitState.PENDING), anyString(), anyString(), anyString());
+    Mockito.verify(statusWrapperTestObj.getRepo(), Mockito.atMost(1)).createCommitStatus(anyString(), Mockito.eq(GHCommitState.PENDING), anyString(), anyString(), anyString());
     Mockito.verify(statusWrapperTestObj.getRepo(), Mockito.times(1)).createCommitStatus(anyString(), Mockito.eq(GHCommitState.SUCCESS), anyString(), anyString(), anyString());
     j.assertLogContains(SUCCESSFUL_LOG_MSG, statusWrapperTestObj.getRun());
     return statusWrapperTestObj;
@@ -134,6 +329,7 @@ public class GitStatusWrapperStepTest {
 
     PowerMockito.when(gh.isCredentialValid()).thenReturn(true);
     PowerMockito.when(gh.getUser(anyString())).thenReturn(user);
+    PowerMockito.when(gh.getRepository(anyString())).thenReturn(repo);
 
     PowerMockito.when(ghb.withProxy(Matchers.<Proxy>anyObject())).thenReturn(ghb);
     PowerMockito.when(ghb.withOAuthToken(anyString(), anyString())).thenReturn(ghb);